@@ -1,16 +1,21 @@
 package br.com.gomestg.libraryapi;
 
-import org.modelmapper.ModelMapper;
+import br.com.gomestg.libraryapi.api.mapper.BookMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 
 @SpringBootApplication
+@EnableCaching
 public class LibraryApiApplication {
 
     @Bean
-    public ModelMapper modelMapper(){
-        return new ModelMapper();
+    public BookMapper bookMapper(ObjectProvider<MeterRegistry> registry){
+        return new BookMapper(registry.getIfAvailable(CompositeMeterRegistry::new));
     }
 
     public static void main(String[] args) {
@@ -0,0 +1,15 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookBatchFailureDTO {
+    private int index;
+    private String isbn;
+    private List<String> errors;
+}
@@ -0,0 +1,17 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookBatchResultDTO {
+    private int received;
+    private int created;
+    @Builder.Default
+    private List<BookBatchFailureDTO> failures = new ArrayList<>();
+}
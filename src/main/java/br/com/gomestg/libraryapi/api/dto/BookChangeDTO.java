@@ -0,0 +1,16 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.time.Instant;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookChangeDTO {
+    private long sequence;
+    private Long id;
+    private String change;
+    private Instant time;
+}
@@ -0,0 +1,15 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookCursorPageDTO {
+    private List<BookDTO> content;
+    private int size;
+    private String nextCursor;
+}
@@ -0,0 +1,16 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookLookupDTO {
+    @Builder.Default
+    private List<BookLookupEntryDTO> results = new ArrayList<>();
+    private int missing;
+}
@@ -0,0 +1,14 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookLookupEntryDTO {
+    private Long id;
+    private String isbn;
+    private boolean found;
+    private BookDTO book;
+}
@@ -0,0 +1,14 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookLookupRequestDTO {
+    private List<Long> ids;
+    private List<String> isbns;
+}
@@ -0,0 +1,14 @@
+package br.com.gomestg.libraryapi.api.dto;
+
+import lombok.*;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class BookWriteStatusDTO {
+    private String ticket;
+    private String status;
+    private Long bookId;
+    private String error;
+}
@@ -17,7 +17,11 @@ public class ApiErrors {
     }
 
     public ApiErrors(LibraryBusinessException e) {
-        this.errors = Arrays.asList(e.getMessage());
+        this(e.getMessage());
+    }
+
+    public ApiErrors(String message) {
+        this.errors = Arrays.asList(message);
     }
 
     public List<String> getErrors() {
@@ -1,78 +1,521 @@
 package br.com.gomestg.libraryapi.api.resource;
 
+import br.com.gomestg.libraryapi.api.dto.BookBatchFailureDTO;
+import br.com.gomestg.libraryapi.api.dto.BookBatchResultDTO;
+import br.com.gomestg.libraryapi.api.dto.BookChangeDTO;
+import br.com.gomestg.libraryapi.api.dto.BookCursorPageDTO;
 import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.api.dto.BookLookupDTO;
+import br.com.gomestg.libraryapi.api.dto.BookLookupEntryDTO;
+import br.com.gomestg.libraryapi.api.dto.BookLookupRequestDTO;
+import br.com.gomestg.libraryapi.api.dto.BookWriteStatusDTO;
 import br.com.gomestg.libraryapi.api.exception.ApiErrors;
+import br.com.gomestg.libraryapi.api.mapper.BookMapper;
 import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
 import br.com.gomestg.libraryapi.model.entity.Book;
 import br.com.gomestg.libraryapi.service.BookService;
-import org.modelmapper.ModelMapper;
+import br.com.gomestg.libraryapi.service.CountStrategy;
+import br.com.gomestg.libraryapi.service.ReadYourWrites;
+import br.com.gomestg.libraryapi.service.feed.BookChange;
+import br.com.gomestg.libraryapi.service.feed.BookChangeFeed;
+import br.com.gomestg.libraryapi.service.queue.BookWriteQueue;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Profile;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
-import java.util.List;
-import java.util.stream.Collectors;
+import javax.validation.Validator;
+import java.io.*;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
 
 @RestController
 @RequestMapping("/api/books")
+@Profile("!reactive")
 public class BookController {
 
+    private static final int BATCH_CHUNK_SIZE = 500;
+    private static final int MAX_CURSOR_PAGE_SIZE = 1000;
+    private static final int MAX_LOOKUP_SIZE = 1000;
+    private static final String PREFER = "Prefer";
+    private static final String PREFERENCE_APPLIED = "Preference-Applied";
+    private static final String RESPOND_ASYNC = "respond-async";
+    private static final String IDEMPOTENCY_KEY = "Idempotency-Key";
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
     private BookService service;
-    private ModelMapper modelMapper;
+    private BookMapper mapper;
+    private ObjectMapper objectMapper;
+    private Validator validator;
+    private BookResponseCache responseCache;
+    private BookWriteQueue writeQueue;
+    private BookChangeFeed changeFeed;
 
-    public BookController(BookService service, ModelMapper modelMapper) {
+    public BookController(BookService service, BookMapper mapper, ObjectMapper objectMapper, Validator validator,
+                          ObjectProvider<BookResponseCache> responseCache, ObjectProvider<BookWriteQueue> writeQueue,
+                          ObjectProvider<BookChangeFeed> changeFeed) {
         this.service = service;
-        this.modelMapper = modelMapper;
+        this.mapper = mapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.responseCache = responseCache.getIfAvailable();
+        this.writeQueue = writeQueue.getIfAvailable();
+        this.changeFeed = changeFeed.getIfAvailable();
     }
 
+    /**
+     * With write-behind enabled, {@code Prefer: respond-async} queues the book instead and
+     * answers 202 with a status URL, or 429 while the queue is full. An {@code Idempotency-Key}
+     * makes retries of a queued create return its first ticket.
+     */
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public BookDTO create(@RequestBody @Valid BookDTO dto) {
-        Book entity = modelMapper.map(dto, Book.class);
+    public ResponseEntity<?> create(@RequestBody @Valid BookDTO dto,
+                                    @RequestHeader(value = PREFER, required = false) String prefer,
+                                    @RequestHeader(value = IDEMPOTENCY_KEY, required = false) String idempotencyKey) {
+        Book entity = mapper.toEntity(dto);
+        if (writeQueue != null && prefer != null && prefer.contains(RESPOND_ASYNC)) {
+            BookWriteQueue.Ticket ticket = writeQueue.submit(entity, idempotencyKey).orElse(null);
+            if (ticket == null) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "1")
+                        .body(new ApiErrors("Too many books waiting to be saved, retry later"));
+            }
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/books/writes/" + ticket.getId()))
+                    .header(PREFERENCE_APPLIED, RESPOND_ASYNC)
+                    .body(toStatusDto(ticket));
+        }
         entity = service.save(entity);
-        return modelMapper.map(entity, BookDTO.class);
+        return ResponseEntity.status(HttpStatus.CREATED).body(mapper.toDto(entity));
+    }
+
+    @GetMapping("writes/{ticket}")
+    public ResponseEntity<BookWriteStatusDTO> findWrite(@PathVariable String ticket) {
+        BookWriteQueue.Ticket found = Optional.ofNullable(writeQueue)
+                .flatMap(queue -> queue.find(ticket))
+                .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (found.getBookId() != null) {
+            response.location(URI.create("/api/books/" + found.getBookId()));
+        }
+        return response.body(toStatusDto(found));
+    }
+
+    private static BookWriteStatusDTO toStatusDto(BookWriteQueue.Ticket ticket) {
+        return new BookWriteStatusDTO(ticket.getId(), ticket.getStatus().name(), ticket.getBookId(), ticket.getError());
+    }
+
+    /**
+     * Imports a JSON array or NDJSON stream of books, reading and inserting it in chunks.
+     * Invalid or already registered books are reported by their position in the body;
+     * everything else is saved.
+     */
+    @PostMapping(value = "batch", consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE})
+    public BookBatchResultDTO createBatch(InputStream body) throws IOException {
+        BookBatchResultDTO result = new BookBatchResultDTO();
+        Map<Integer, Book> chunk = new LinkedHashMap<>();
+        int index = 0;
+        try (MappingIterator<BookDTO> items = objectMapper.readerFor(BookDTO.class).readValues(body)) {
+            while (items.hasNextValue()) {
+                BookDTO dto = items.nextValue();
+                Set<ConstraintViolation<BookDTO>> violations = validator.validate(dto);
+                if (violations.isEmpty()) {
+                    chunk.put(index, mapper.toEntity(dto));
+                } else {
+                    List<String> errors = new ArrayList<>();
+                    violations.forEach(violation -> errors.add(violation.getPropertyPath() + " " + violation.getMessage()));
+                    result.getFailures().add(new BookBatchFailureDTO(index, dto.getIsbn(), errors));
+                }
+                index++;
+                if (chunk.size() == BATCH_CHUNK_SIZE) {
+                    saveChunk(chunk, result);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            result.getFailures().add(new BookBatchFailureDTO(index, null,
+                    Collections.singletonList("Malformed book: " + e.getMessage())));
+        }
+        saveChunk(chunk, result);
+        result.setReceived(index);
+        result.getFailures().sort(Comparator.comparingInt(BookBatchFailureDTO::getIndex));
+        return result;
     }
 
+    private void saveChunk(Map<Integer, Book> chunk, BookBatchResultDTO result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        Set<String> saved = new HashSet<>();
+        service.saveAll(new ArrayList<>(chunk.values())).forEach(book -> saved.add(book.getIsbn()));
+        chunk.forEach((index, book) -> {
+            if (saved.remove(book.getIsbn())) {
+                result.setCreated(result.getCreated() + 1);
+            } else {
+                result.getFailures().add(new BookBatchFailureDTO(index, book.getIsbn(),
+                        Collections.singletonList("Isbn already registered")));
+            }
+        });
+        chunk.clear();
+    }
+
+    /**
+     * With the response cache enabled, repeated reads of a book in JSON, CBOR or Smile are
+     * answered with the bytes encoded the first time.
+     */
     @GetMapping("{id}")
-    public BookDTO findBookById(@PathVariable Long id) {
-        return service.getById(id)
-                .map(book -> modelMapper.map(book, BookDTO.class))
+    public ResponseEntity<?> findBookById(@PathVariable Long id,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                          WebRequest request) {
+        // a client that just wrote could otherwise get back the copy cached before its write
+        MediaType type = responseCache == null || ReadYourWrites.isPinned() ? null : responseCache.negotiate(accept);
+        if (type != null) {
+            return findCachedBookById(id, type, request);
+        }
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        String etag = BookETags.etag(book);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        return withEtag(ResponseEntity.ok(), etag).body(mapper.toDto(book));
+    }
+
+    private ResponseEntity<ByteBuffer> findCachedBookById(Long id, MediaType type, WebRequest request) {
+        long stamp = responseCache.stamp();
+        BookResponseCache.Entry entry = responseCache.get(id, type);
+        if (entry == null) {
+            Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+            entry = responseCache.put(id, type, BookETags.etag(book), mapper.toDto(book), stamp);
+        }
+        if (entry.getEtag() != null && request.checkNotModified(entry.getEtag())) {
+            return null;
+        }
+        return withEtag(ResponseEntity.ok(), entry.getEtag()).contentType(type).body(entry.getBody());
+    }
+
+    @GetMapping("isbn/{isbn}")
+    public BookDTO findBookByIsbn(@PathVariable String isbn) {
+        return service.getByIsbn(isbn)
+                .map(mapper::toDto)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
     }
 
+    /**
+     * Many books by id in one request, e.g. {@code ?ids=3,1,2}. Results follow the order of
+     * {@code ids}, with an explicit not-found entry for every id that matches no book.
+     */
+    @GetMapping(params = "ids")
+    public BookLookupDTO findBooksById(@RequestParam List<Long> ids) {
+        checkLookupSize(ids.size());
+        return toLookupDto(service.getAllById(ids), ids, Collections.nCopies(ids.size(), null));
+    }
+
+    /**
+     * Body form of {@link #findBooksById} for long lists, by either {@code ids} or {@code isbns}.
+     */
+    @PostMapping("lookup")
+    public BookLookupDTO lookupBooks(@RequestBody BookLookupRequestDTO dto) {
+        boolean byId = dto.getIds() != null && !dto.getIds().isEmpty();
+        boolean byIsbn = dto.getIsbns() != null && !dto.getIsbns().isEmpty();
+        if (byId == byIsbn) {
+            throw new LibraryBusinessException("Either ids or isbns must be given");
+        }
+        if (byId) {
+            return findBooksById(dto.getIds());
+        }
+        List<String> isbns = dto.getIsbns();
+        checkLookupSize(isbns.size());
+        return toLookupDto(service.getAllByIsbn(isbns), Collections.nCopies(isbns.size(), null), isbns);
+    }
+
+    private static void checkLookupSize(int size) {
+        if (size < 1 || size > MAX_LOOKUP_SIZE) {
+            throw new LibraryBusinessException("Between 1 and " + MAX_LOOKUP_SIZE + " books can be looked up at once");
+        }
+    }
+
+    private BookLookupDTO toLookupDto(List<Optional<Book>> books, List<Long> ids, List<String> isbns) {
+        BookLookupDTO result = new BookLookupDTO();
+        for (int i = 0; i < books.size(); i++) {
+            BookDTO book = books.get(i).map(mapper::toDto).orElse(null);
+            result.getResults().add(new BookLookupEntryDTO(ids.get(i), isbns.get(i), book != null, book));
+            if (book == null) {
+                result.setMissing(result.getMissing() + 1);
+            }
+        }
+        return result;
+    }
+
     @DeleteMapping("{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public void deleteBook(@PathVariable Long id) {
-        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
-        service.delete(book);
+    public void deleteBook(@PathVariable Long id,
+                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (!service.deleteById(id, BookETags.version(ifMatch))) {
+            throw notFoundOrStale(id, ifMatch);
+        }
     }
 
+    /**
+     * Updates title and author in a single statement. With {@code If-Match} the update
+     * only applies while the book still has that ETag.
+     */
     @PutMapping("{id}")
-    public BookDTO update(@PathVariable Long id, BookDTO dto) {
-        return service.getById(id)
-                .map(b -> {
-                    b.setAuthor(dto.getAuthor());
-                    b.setTitle(dto.getTitle());
-                    b = service.update(b);
-                    return modelMapper.map(b, BookDTO.class);
-                }).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+    public ResponseEntity<BookDTO> update(@PathVariable Long id,
+                                          @RequestBody BookDTO dto,
+                                          @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        if (!service.updateById(id, mapper.toEntity(dto), BookETags.version(ifMatch))) {
+            throw notFoundOrStale(id, ifMatch);
+        }
+        Book book = service.getById(id).orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND));
+        return withEtag(ResponseEntity.ok(), BookETags.etag(book)).body(mapper.toDto(book));
     }
 
+    private ResponseStatusException notFoundOrStale(Long id, String ifMatch) {
+        if (ifMatch != null && service.getById(id).isPresent()) {
+            return new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+        }
+        return new ResponseStatusException(HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Pages through books matching the given fields. Rows are read as projections, never as
+     * managed entities; {@code fields} narrows both the columns read and the response.
+     * {@code count} picks how the total is worked out; {@code none} answers with a slice
+     * that has no total at all.
+     */
     @GetMapping
-    public Page<BookDTO> findBook(BookDTO dto, Pageable pageRequest){
-        Book filter = modelMapper.map(dto, Book.class);
-        Page<Book> result = service.find(filter, pageRequest);
-        List<BookDTO> list = result.getContent()
-                .stream()
-                .map(entity -> modelMapper.map(entity, BookDTO.class))
-                .collect(Collectors.toList());
-
-        return new PageImpl<BookDTO>(list, pageRequest, result.getTotalElements());
+    public ResponseEntity<Slice<?>> findBook(BookDTO dto,
+                                             @RequestParam(required = false) Set<String> fields,
+                                             @RequestParam(defaultValue = "exact") String count,
+                                             Pageable pageRequest,
+                                             WebRequest request){
+        Set<String> selected = fields == null ? BookMapper.FIELDS : fields;
+        if (selected.isEmpty() || !BookMapper.FIELDS.containsAll(selected)) {
+            throw new LibraryBusinessException("Fields must be among " + BookMapper.FIELDS);
+        }
+        Set<String> columns = new HashSet<>(selected);
+        columns.add("id");
+        columns.add("version");
+
+        Book filter = mapper.toEntity(dto);
+        Slice<Book> result = service.find(filter, columns, pageRequest, countStrategy(count));
+        String etag = etag(result);
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        List<?> list = fields == null
+                ? mapper.toDtoList(result.getContent())
+                : mapper.toMapList(result.getContent(), fields);
+
+        Slice<?> body = result instanceof Page
+                ? new PageImpl<>(list, pageRequest, ((Page<Book>) result).getTotalElements())
+                : new SliceImpl<>(list, pageRequest, result.hasNext());
+        return withEtag(ResponseEntity.ok(), etag).body(body);
+    }
+
+    private static CountStrategy countStrategy(String count) {
+        for (CountStrategy strategy : CountStrategy.values()) {
+            if (strategy.name().equalsIgnoreCase(count)) {
+                return strategy;
+            }
+        }
+        throw new LibraryBusinessException("Count must be exact, cached, estimated or none");
+    }
+
+    /**
+     * Streams the whole catalog as NDJSON (default) or CSV straight from a database cursor.
+     */
+    @GetMapping("export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        if (format.equals("csv")) {
+            return ResponseEntity.ok()
+                    .contentType(new MediaType("text", "csv", StandardCharsets.UTF_8))
+                    .body(this::writeCsv);
+        }
+        if (format.equals("ndjson")) {
+            return ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_NDJSON)
+                    .body(this::writeNdjson);
+        }
+        throw new LibraryBusinessException("Format must be ndjson or csv");
+    }
+
+    private void writeNdjson(OutputStream out) throws IOException {
+        try (SequenceWriter writer = objectMapper.writerFor(BookDTO.class).withRootValueSeparator("\n").writeValues(out)) {
+            service.export(book -> {
+                try {
+                    writer.write(mapper.toDto(book));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private void writeCsv(OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("id,title,author,isbn\n");
+        service.export(book -> {
+            try {
+                writer.write(String.valueOf(book.getId()));
+                writer.write(',');
+                writeCsvField(writer, book.getTitle());
+                writer.write(',');
+                writeCsvField(writer, book.getAuthor());
+                writer.write(',');
+                writeCsvField(writer, book.getIsbn());
+                writer.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        writer.flush();
+    }
+
+    private static void writeCsvField(Writer writer, String value) throws IOException {
+        if (value == null) {
+            return;
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    /**
+     * Ranked full-text search over title and author. Without {@code q} the remaining
+     * parameters are applied as field filters, as in {@link #findBook}.
+     */
+    @GetMapping("search")
+    public Page<BookDTO> searchBooks(@RequestParam(required = false) String q, BookDTO dto, Pageable pageRequest) {
+        Page<Book> result = q == null || q.trim().isEmpty()
+                ? service.find(mapper.toEntity(dto), pageRequest)
+                : service.search(q, pageRequest);
+        return new PageImpl<BookDTO>(mapper.toDtoList(result.getContent()), pageRequest, result.getTotalElements());
+    }
+
+    /**
+     * Keyset alternative to {@link #findBook}: pages by id after an opaque cursor and
+     * never counts. An empty {@code after} starts from the beginning.
+     */
+    @GetMapping(params = "after")
+    public BookCursorPageDTO findBookAfter(BookDTO dto,
+                                           @RequestParam String after,
+                                           @RequestParam(defaultValue = "20") int size) {
+        if (size < 1 || size > MAX_CURSOR_PAGE_SIZE) {
+            throw new LibraryBusinessException("Size must be between 1 and " + MAX_CURSOR_PAGE_SIZE);
+        }
+        Slice<Book> result = service.findAfter(mapper.toEntity(dto), decodeCursor(after), size);
+        List<Book> content = result.getContent();
+        String nextCursor = result.hasNext() ? encodeCursor(content.get(content.size() - 1).getId()) : null;
+        return new BookCursorPageDTO(mapper.toDtoList(content), content.size(), nextCursor);
+    }
+
+    /**
+     * Streams book writes as server-sent {@code change} events, with the feed's epoch and their
+     * sequence as event id. Resumes after the event id {@code since}, or after the
+     * {@code Last-Event-ID} of a reconnecting client; without either, starts from now. When the
+     * changes to resume from are gone, or the id is from another run of the feed, a single
+     * {@code reset} event carrying the latest event id ends the stream.
+     */
+    @GetMapping(value = "changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) String since,
+                                    @RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId) {
+        if (changeFeed == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+        }
+        SseEmitter emitter = new SseEmitter();
+        BookChangeFeed.Subscription subscription = changeFeed.subscribe(since != null ? since : lastEventId,
+                new BookChangeFeed.Listener() {
+                    @Override
+                    public void onChanges(List<BookChange> changes) throws IOException {
+                        for (BookChange change : changes) {
+                            emitter.send(SseEmitter.event()
+                                    .id(changeFeed.eventId(change.getSequence()))
+                                    .name("change")
+                                    .data(toChangeDto(change), MediaType.APPLICATION_JSON));
+                        }
+                    }
+
+                    @Override
+                    public void onReset(long sequence) throws IOException {
+                        emitter.send(SseEmitter.event().name("reset").data(changeFeed.eventId(sequence)));
+                        emitter.complete();
+                    }
+
+                    @Override
+                    public void onIdle() throws IOException {
+                        emitter.send(SseEmitter.event().comment("idle"));
+                    }
+
+                    @Override
+                    public void onDropped() {
+                        // once the stalled send returns; the client reconnects with its last event id
+                        emitter.complete();
+                    }
+                });
+        emitter.onCompletion(subscription::cancel);
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscription.cancel());
+        return emitter;
+    }
+
+    private static BookChangeDTO toChangeDto(BookChange change) {
+        return new BookChangeDTO(change.getSequence(), change.getBookId(), change.getChange().name(), change.getTime());
+    }
+
+    /**
+     * Weak ETag of a page: changes when the total, whether there is a next page, or any book
+     * on the page changes.
+     */
+    private static String etag(Slice<Book> page) {
+        long hash = page instanceof Page ? ((Page<Book>) page).getTotalElements() : page.hasNext() ? 1 : 0;
+        for (Book book : page) {
+            hash = 31 * (31 * hash + Objects.hashCode(book.getId())) + Objects.hashCode(book.getVersion());
+        }
+        return "W/\"" + Long.toHexString(hash) + "\"";
+    }
+
+    private static ResponseEntity.BodyBuilder withEtag(ResponseEntity.BodyBuilder builder, String etag) {
+        return etag == null ? builder : builder.eTag(etag);
+    }
+
+    private static String encodeCursor(Long id) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(id.toString().getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static Long decodeCursor(String cursor) {
+        if (cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            throw new LibraryBusinessException("Invalid cursor");
+        }
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
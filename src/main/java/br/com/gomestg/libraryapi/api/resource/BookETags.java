@@ -0,0 +1,36 @@
+package br.com.gomestg.libraryapi.api.resource;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Strong ETags of single books, shared by the servlet and reactive controllers.
+ */
+final class BookETags {
+
+    private BookETags() {
+    }
+
+    static String etag(Book book) {
+        return book.getVersion() == null ? null : "\"" + book.getVersion() + "\"";
+    }
+
+    /**
+     * @return the version required by an {@code If-Match} header, or null when any version will do
+     */
+    static Long version(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String etag = ifMatch.trim();
+        if (etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"")) {
+            try {
+                return Long.valueOf(etag.substring(1, etag.length() - 1));
+            } catch (NumberFormatException e) {
+                // not one of our ETags
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+    }
+}
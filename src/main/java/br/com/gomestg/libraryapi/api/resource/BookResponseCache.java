@@ -0,0 +1,155 @@
+package br.com.gomestg.libraryapi.api.resource;
+
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Already encoded {@code GET /api/books/{id}} bodies, one per book and media type, held off-heap
+ * in direct buffers up to a total number of bytes. Entries are dropped whenever
+ * {@link BookChangedEvent} reports a write to their book.
+ * <p>
+ * The direct memory of an evicted entry is only released once its buffer is collected, so
+ * {@code -XX:MaxDirectMemorySize} needs some headroom above the bound.
+ */
+public class BookResponseCache implements MeterBinder {
+
+    private final Map<MediaType, ObjectWriter> writers;
+    private final Cache<Key, Entry> entries;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param writers  encoders of the cached media types, in order of preference
+     * @param maxBytes bound on the size of all cached bodies together
+     */
+    public BookResponseCache(Map<MediaType, ObjectWriter> writers, long maxBytes) {
+        this.writers = writers;
+        this.entries = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .<Key, Entry>weigher((key, entry) -> entry.body.capacity())
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * @return the cached media type the {@code Accept} header prefers, or null when it accepts
+     * none of them and the response can't come from this cache
+     */
+    public MediaType negotiate(String accept) {
+        List<MediaType> accepted;
+        try {
+            accepted = accept == null ? Collections.singletonList(MediaType.ALL) : MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return null;
+        }
+        MediaType.sortBySpecificityAndQuality(accepted);
+        for (MediaType type : accepted) {
+            for (MediaType cached : writers.keySet()) {
+                if (type.includes(cached)) {
+                    return cached;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Taken before loading a book, and handed back to {@link #put} so that a body loaded before a
+     * concurrent write is not cached after that write has invalidated it.
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    public Entry get(Long id, MediaType type) {
+        return entries.getIfPresent(new Key(id, type));
+    }
+
+    /**
+     * Encodes {@code body} and caches it, unless a book was invalidated since {@code stamp}.
+     *
+     * @return the encoded entry, cached or not
+     */
+    public Entry put(Long id, MediaType type, String etag, Object body, long stamp) {
+        byte[] bytes;
+        try {
+            bytes = writers.get(type).writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes).flip();
+        Entry entry = new Entry(etag, buffer.asReadOnlyBuffer());
+        if (invalidations.get() == stamp) {
+            entries.put(new Key(id, type), entry);
+            // a write that raced the put above must not leave its entry behind
+            if (invalidations.get() != stamp) {
+                entries.invalidate(new Key(id, type));
+            }
+        }
+        return entry;
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        invalidations.incrementAndGet();
+        for (MediaType type : writers.keySet()) {
+            entries.invalidate(new Key(event.getId(), type));
+        }
+    }
+
+    /**
+     * Runs pending evictions now rather than on a later access.
+     */
+    void cleanUp() {
+        entries.cleanUp();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        // same tag keys as the Spring caches, or Prometheus drops whichever registers second
+        CaffeineCacheMetrics.monitor(registry, entries, "bookResponses",
+                "cacheManager", "bookResponseCache", "name", "bookResponses");
+        Gauge.builder("library.response-cache.bytes", entries, cache -> cache.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0)).orElse(0L))
+                .description("Off-heap bytes held by cached book responses")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    @Value
+    private static class Key {
+        Long id;
+        MediaType type;
+    }
+
+    @Value
+    public static class Entry {
+        String etag;
+        ByteBuffer body;
+
+        /**
+         * @return a view of the body with its own position, to be written out once
+         */
+        public ByteBuffer getBody() {
+            return body.duplicate();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package br.com.gomestg.libraryapi.api.resource;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.api.exception.ApiErrors;
+import br.com.gomestg.libraryapi.api.mapper.BookMapper;
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.ReactiveBookService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.Valid;
+
+/**
+ * WebFlux counterpart of {@link BookController}, active under the {@code reactive} profile.
+ * Serves the same paths and ETag rules, but no request thread ever waits on the database.
+ */
+@RestController
+@RequestMapping("/api/books")
+@Profile("reactive")
+public class ReactiveBookController {
+
+    private ReactiveBookService service;
+    private BookMapper mapper;
+
+    public ReactiveBookController(ReactiveBookService service, BookMapper mapper) {
+        this.service = service;
+        this.mapper = mapper;
+    }
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<BookDTO> create(@RequestBody @Valid BookDTO dto) {
+        return service.save(mapper.toEntity(dto)).map(mapper::toDto);
+    }
+
+    /**
+     * Conditional GETs are answered by WebFlux itself from the ETag of the returned entity.
+     */
+    @GetMapping("{id}")
+    public Mono<ResponseEntity<BookDTO>> findBookById(@PathVariable Long id) {
+        return service.getById(id)
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .map(book -> withEtag(ResponseEntity.ok(), BookETags.etag(book)).body(mapper.toDto(book)));
+    }
+
+    @DeleteMapping("{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteBook(@PathVariable Long id,
+                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return service.deleteById(id, BookETags.version(ifMatch))
+                .flatMap(deleted -> deleted ? Mono.<Void>empty() : notFoundOrStale(id, ifMatch));
+    }
+
+    @PutMapping("{id}")
+    public Mono<ResponseEntity<BookDTO>> update(@PathVariable Long id,
+                                                @RequestBody BookDTO dto,
+                                                @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return service.updateById(id, mapper.toEntity(dto), BookETags.version(ifMatch))
+                .flatMap(updated -> updated ? service.getById(id) : notFoundOrStale(id, ifMatch))
+                .switchIfEmpty(Mono.error(() -> new ResponseStatusException(HttpStatus.NOT_FOUND)))
+                .map(book -> withEtag(ResponseEntity.ok(), BookETags.etag(book)).body(mapper.toDto(book)));
+    }
+
+    private <T> Mono<T> notFoundOrStale(Long id, String ifMatch) {
+        if (ifMatch == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND));
+        }
+        return service.getById(id).hasElement().flatMap(exists -> Mono.error(
+                new ResponseStatusException(exists ? HttpStatus.PRECONDITION_FAILED : HttpStatus.NOT_FOUND)));
+    }
+
+    @GetMapping
+    public Mono<Page<BookDTO>> findBook(BookDTO dto, Pageable pageRequest) {
+        return service.find(mapper.toEntity(dto), pageRequest)
+                .map(result -> new PageImpl<>(mapper.toDtoList(result.getContent()), pageRequest, result.getTotalElements()));
+    }
+
+    /**
+     * Streams every book matching the given fields as NDJSON. Rows are only read from the
+     * database as fast as the client consumes them.
+     */
+    @GetMapping(value = "export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BookDTO> export(BookDTO dto) {
+        return service.stream(mapper.toEntity(dto)).map(mapper::toDto);
+    }
+
+    private static ResponseEntity.BodyBuilder withEtag(ResponseEntity.BodyBuilder builder, String etag) {
+        return etag == null ? builder : builder.eTag(etag);
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiErrors handlerValidationException(WebExchangeBindException e) {
+        return new ApiErrors(e.getBindingResult());
+    }
+
+    @ExceptionHandler(LibraryBusinessException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public ApiErrors handlerValidationException(LibraryBusinessException e) {
+        return new ApiErrors(e);
+    }
+
+}
@@ -0,0 +1,87 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.api.exception.ApiErrors;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CBOR ({@code application/cbor}) and Smile ({@code application/x-jackson-smile}) request and
+ * response bodies, chosen by {@code Content-Type} and {@code Accept}. Both are binary encodings
+ * of the same Jackson model as JSON, so every DTO works unchanged.
+ * <p>
+ * Spring MVC registers both converters, after the JSON one, as soon as the formats are on the
+ * classpath, but with plain mappers; they are swapped for mappers carrying the same
+ * customizations as the JSON one.
+ * <p>
+ * Protobuf ({@code application/x-protobuf}) is added after them, for the messages of
+ * {@value #PROTO_SCHEMA}: a book, the page of {@code GET /api/books} and the errors of a 400.
+ * Other bodies are not negotiable as Protobuf.
+ */
+@Configuration(proxyBeanMethods = false)
+public class BinaryFormatsConfiguration implements WebMvcConfigurer {
+
+    static final String PROTO_SCHEMA = "proto/books.proto";
+
+    private final ObjectMapper cborMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper protobufMapper;
+    private final NativeProtobufSchema protobufSchema;
+
+    public BinaryFormatsConfiguration(Jackson2ObjectMapperBuilder builder) {
+        this.cborMapper = builder.factory(new CBORFactory()).build();
+        this.smileMapper = builder.factory(new SmileFactory()).build();
+        // a message only has fields for part of what Jackson sees, such as a page's content and totals;
+        // properties left out are skipped, but only when not objects themselves
+        this.protobufMapper = builder.factory(new ProtobufFactory()).build()
+                .enable(JsonGenerator.Feature.IGNORE_UNKNOWN)
+                .addMixIn(Slice.class, ProtobufSliceMixIn.class);
+        try {
+            this.protobufSchema = ProtobufSchemaLoader.std.loadNative(new ClassPathResource(PROTO_SCHEMA).getURL());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load " + PROTO_SCHEMA, e);
+        }
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.replaceAll(converter -> {
+            if (converter instanceof MappingJackson2CborHttpMessageConverter) {
+                return new MappingJackson2CborHttpMessageConverter(cborMapper);
+            }
+            if (converter instanceof MappingJackson2SmileHttpMessageConverter) {
+                return new MappingJackson2SmileHttpMessageConverter(smileMapper);
+            }
+            return converter;
+        });
+        Map<Class<?>, String> messages = new LinkedHashMap<>();
+        messages.put(BookDTO.class, "Book");
+        messages.put(Slice.class, "BookPage");
+        messages.put(ApiErrors.class, "Errors");
+        converters.add(new MappingJackson2ProtobufHttpMessageConverter(protobufMapper, protobufSchema, messages));
+    }
+
+    @JsonIgnoreProperties({"pageable", "sort"})
+    private interface ProtobufSliceMixIn {
+    }
+}
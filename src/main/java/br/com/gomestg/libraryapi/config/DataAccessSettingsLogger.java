@@ -0,0 +1,93 @@
+package br.com.gomestg.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.query.spi.QueryPlanCache;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Logs the pool, JDBC and Hibernate settings in effect once the application is up, as resolved
+ * by Hikari and Hibernate rather than as written in the properties, and warns about
+ * combinations that silently undo them. See {@code application-perf.properties}.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class DataAccessSettingsLogger {
+
+    private final ObjectProvider<DataSource> dataSource;
+    private final ObjectProvider<EntityManagerFactory> entityManagerFactory;
+
+    public DataAccessSettingsLogger(ObjectProvider<DataSource> dataSource,
+                                    ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        this.dataSource = dataSource;
+        this.entityManagerFactory = entityManagerFactory;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void logSettings() {
+        HikariDataSource pool = hikari(dataSource.getIfUnique());
+        if (pool != null) {
+            log.info("Connection pool {}: maximumPoolSize={}, minimumIdle={}, connectionTimeout={}ms, autoCommit={}, dataSourceProperties={}",
+                    pool.getPoolName(), pool.getMaximumPoolSize(), pool.getMinimumIdle(), pool.getConnectionTimeout(),
+                    pool.isAutoCommit(), pool.getDataSourceProperties());
+            log.info("H2 statement cache: QUERY_CACHE_SIZE={}", h2Setting(pool, "QUERY_CACHE_SIZE"));
+        }
+
+        EntityManagerFactory emf = entityManagerFactory.getIfUnique();
+        if (emf == null) {
+            return;
+        }
+        SessionFactoryOptions options = emf.unwrap(SessionFactoryImplementor.class).getSessionFactoryOptions();
+        Map<String, Object> properties = emf.getProperties();
+        log.info("Hibernate JDBC: batch_size={}, order_inserts={}, order_updates={}, batch_versioned_data={}, fetch_size={}, provider_disables_autocommit={}",
+                options.getJdbcBatchSize(), options.isOrderInsertsEnabled(), options.isOrderUpdatesEnabled(),
+                options.isJdbcBatchVersionedData(), options.getJdbcFetchSize(), options.doesConnectionProviderDisableAutoCommit());
+        log.info("Hibernate query plans: plan_cache_max_size={}, plan_parameter_metadata_max_size={}, in_clause_parameter_padding={}",
+                properties.getOrDefault(AvailableSettings.QUERY_PLAN_CACHE_MAX_SIZE, QueryPlanCache.DEFAULT_QUERY_PLAN_MAX_COUNT),
+                properties.getOrDefault(AvailableSettings.QUERY_PLAN_CACHE_PARAMETER_METADATA_MAX_SIZE,
+                        QueryPlanCache.DEFAULT_PARAMETER_METADATA_MAX_COUNT),
+                options.inClauseParameterPaddingEnabled());
+
+        if (options.doesConnectionProviderDisableAutoCommit() && pool != null && pool.isAutoCommit()) {
+            log.warn("hibernate.connection.provider_disables_autocommit is set but the pool hands out auto-commit connections: "
+                    + "every statement commits on its own. Set spring.datasource.hikari.auto-commit=false");
+        }
+        if (options.getJdbcBatchSize() > 1 && !options.isOrderInsertsEnabled()) {
+            log.warn("hibernate.jdbc.batch_size is {} but hibernate.order_inserts is off: inserts of mixed entities break batches",
+                    options.getJdbcBatchSize());
+        }
+    }
+
+    private static HikariDataSource hikari(DataSource dataSource) {
+        try {
+            return dataSource != null && dataSource.isWrapperFor(HikariDataSource.class)
+                    ? dataSource.unwrap(HikariDataSource.class) : null;
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static String h2Setting(DataSource dataSource, String name) {
+        try {
+            return new JdbcTemplate(dataSource).queryForObject(
+                    "select value from information_schema.settings where name = ?", String.class, name);
+        } catch (DataAccessException e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package br.com.gomestg.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.Environment;
+
+import java.util.List;
+
+/**
+ * Hikari pools for databases besides {@code spring.datasource.url}, set up like the one Spring
+ * Boot builds for it.
+ */
+final class DataSourcePools {
+
+    private DataSourcePools() {
+    }
+
+    /**
+     * A pool with the {@code spring.datasource.hikari} settings and the primary's credentials.
+     */
+    static HikariDataSource create(String name, String url, DataSourceProperties properties, Environment environment) {
+        HikariDataSource pool = new HikariDataSource();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setDriverClassName(properties.determineDriverClassName());
+        pool.setUsername(properties.determineUsername());
+        pool.setPassword(properties.determinePassword());
+        return pool;
+    }
+
+    /**
+     * Reports the pools' {@code hikaricp.*} meters, tagged with their pool names. Called from a
+     * {@link io.micrometer.core.instrument.binder.MeterBinder} rather than when the pools are
+     * built, as the registry binds its meters while the data sources are still being created.
+     */
+    static void bindMetrics(List<HikariDataSource> pools, MeterRegistry registry) {
+        pools.forEach(pool -> pool.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry)));
+    }
+}
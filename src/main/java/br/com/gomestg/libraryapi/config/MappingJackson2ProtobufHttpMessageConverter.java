@@ -0,0 +1,92 @@
+package br.com.gomestg.libraryapi.config;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Protobuf ({@code application/x-protobuf}) bodies written and read by Jackson, against the
+ * messages of a {@code .proto} schema. Only the types mapped to a message are converted; each
+ * is encoded as its message, leaving out properties the message has no field for.
+ */
+class MappingJackson2ProtobufHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private final Map<Class<?>, ProtobufSchema> schemas = new LinkedHashMap<>();
+
+    /**
+     * @param messages the message for each type, subtypes included
+     */
+    MappingJackson2ProtobufHttpMessageConverter(ObjectMapper objectMapper, NativeProtobufSchema schema,
+                                                Map<Class<?>, String> messages) {
+        super(objectMapper, PROTOBUF);
+        messages.forEach((type, message) -> schemas.put(type, schema.forType(message)));
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return schema(clazz) != null;
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return supports(getJavaType(type, contextClass).getRawClass()) && canRead(mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return supports(clazz) && canWrite(mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        JavaType javaType = getJavaType(type, contextClass);
+        try {
+            return defaultObjectMapper.readerFor(javaType)
+                    .with(schema(javaType.getRawClass()))
+                    .readValue(inputMessage.getBody());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("Protobuf parse error: " + e.getOriginalMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(clazz, null, inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        try {
+            defaultObjectMapper.writer()
+                    .with(schema(object.getClass()))
+                    .writeValue(StreamUtils.nonClosing(outputMessage.getBody()), object);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write Protobuf: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private ProtobufSchema schema(Class<?> clazz) {
+        for (Map.Entry<Class<?>, ProtobufSchema> schema : schemas.entrySet()) {
+            if (schema.getKey().isAssignableFrom(clazz)) {
+                return schema.getValue();
+            }
+        }
+        return null;
+    }
+}
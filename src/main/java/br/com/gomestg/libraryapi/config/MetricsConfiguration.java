@@ -0,0 +1,165 @@
+package br.com.gomestg.libraryapi.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.hibernate.cache.jcache.internal.JCacheRegionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import javax.cache.CacheManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Meters beyond what Actuator binds on its own ({@code http.server.requests},
+ * {@code spring.data.repository.invocations}, {@code hibernate.*}, {@code hikaricp.*},
+ * {@code cache.*}), all scraped from {@code /actuator/prometheus}.
+ */
+@Configuration(proxyBeanMethods = false)
+public class MetricsConfiguration {
+
+    /**
+     * Hits, misses, puts and evictions of the Hibernate second-level cache regions as the
+     * {@code cache.*} meters, tagged {@code cacheManager=hibernate} and the region as {@code cache}
+     * and {@code name}, like the Spring caches. They come from the JCache statistics the regions
+     * keep (see application.conf), which cost far less than Hibernate's own statistics, left off
+     * by default.
+     */
+    @Bean
+    public SmartInitializingSingleton secondLevelCacheMetrics(ObjectProvider<EntityManagerFactory> entityManagerFactory,
+                                                              ObjectProvider<MeterRegistry> registry) {
+        return () -> entityManagerFactory.ifAvailable(factory -> registry.ifAvailable(meterRegistry -> {
+            RegionFactory regionFactory = factory.unwrap(SessionFactoryImplementor.class).getCache().getRegionFactory();
+            if (regionFactory instanceof JCacheRegionFactory) {
+                CacheManager cacheManager = ((JCacheRegionFactory) regionFactory).getCacheManager();
+                for (String region : cacheManager.getCacheNames()) {
+                    new JCacheMetrics(cacheManager.getCache(region), Tags.of("cacheManager", "hibernate", "name", region)).bindTo(meterRegistry);
+                }
+            }
+        }));
+    }
+
+    /**
+     * Counts the SQL statements Hibernate prepares as {@code library.repository.statements},
+     * tagged with the repository method they were issued for and their kind, so the count query
+     * of a page or the selects of an N+1 show up next to the method's own timing in
+     * {@code spring.data.repository.invocations}. Switched off by
+     * {@code library.metrics.repository-statements.enabled=false}.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(name = "library.metrics.repository-statements.enabled", havingValue = "true")
+    static class RepositoryStatementsConfiguration {
+
+        @Bean
+        public static BeanPostProcessor repositoryMethodTracking() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                    if (bean instanceof RepositoryFactoryBeanSupport) {
+                        ((RepositoryFactoryBeanSupport<?, ?, ?>) bean).addRepositoryFactoryCustomizer(factory ->
+                                factory.addRepositoryProxyPostProcessor((proxy, repository) -> proxy.addAdvice(
+                                        new RepositoryMethodInterceptor(repository.getRepositoryInterface().getSimpleName()))));
+                    }
+                    return bean;
+                }
+            };
+        }
+
+        @Bean
+        public HibernatePropertiesCustomizer repositoryStatementCounting(ObjectProvider<MeterRegistry> registry) {
+            return properties -> registry.ifAvailable(meterRegistry ->
+                    properties.put(AvailableSettings.STATEMENT_INSPECTOR, new StatementCounter(meterRegistry)));
+        }
+    }
+
+    /**
+     * Names the repository method the current thread is in, the outermost one when a repository
+     * calls another.
+     */
+    static class RepositoryMethodInterceptor implements MethodInterceptor {
+
+        static final ThreadLocal<String[]> CURRENT = new ThreadLocal<>();
+
+        private final String repository;
+
+        RepositoryMethodInterceptor(String repository) {
+            this.repository = repository;
+        }
+
+        @Override
+        public Object invoke(MethodInvocation invocation) throws Throwable {
+            if (CURRENT.get() != null) {
+                return invocation.proceed();
+            }
+            CURRENT.set(new String[]{repository, invocation.getMethod().getName()});
+            try {
+                return invocation.proceed();
+            } finally {
+                CURRENT.remove();
+            }
+        }
+    }
+
+    static class StatementCounter implements StatementInspector {
+
+        private static final String[] NONE = {"none", "none"};
+
+        private final MeterRegistry registry;
+        private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+        StatementCounter(MeterRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public String inspect(String sql) {
+            String[] method = RepositoryMethodInterceptor.CURRENT.get();
+            String[] tags = method != null ? method : NONE;
+            String kind = kind(sql);
+            counters.computeIfAbsent(tags[0] + '.' + tags[1] + ':' + kind, key -> Counter.builder("library.repository.statements")
+                    .description("SQL statements Hibernate prepared, by the repository method they were issued for")
+                    .tag("repository", tags[0])
+                    .tag("method", tags[1])
+                    .tag("statement", kind)
+                    .register(registry))
+                    .increment();
+            return sql;
+        }
+
+        /**
+         * @return select, count, insert, update, delete or other
+         */
+        static String kind(String sql) {
+            String statement = sql.trim().toLowerCase(Locale.ROOT);
+            int space = statement.indexOf(' ');
+            String verb = space < 0 ? statement : statement.substring(0, space);
+            switch (verb) {
+                case "select":
+                    int from = statement.indexOf(" from ");
+                    return statement.substring(0, from < 0 ? statement.length() : from).contains("count(") ? "count" : verb;
+                case "insert":
+                case "update":
+                case "delete":
+                    return verb;
+                default:
+                    return "other";
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.service.ReadYourWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends read-only transactions to one of a set of replica pools and everything else to the
+ * primary. The routing decision is taken when a connection is requested, so this has to sit
+ * behind a {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy}: the
+ * transaction managers ask for the connection before they mark the transaction read-only.
+ * <p>
+ * A thread pinned with {@link ReadYourWrites} reads from the primary, so that it sees its own
+ * writes while the replicas may still lag behind them.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource implements Closeable {
+
+    public enum Selection {
+        ROUND_ROBIN, LEAST_LOADED
+    }
+
+    static final String PRIMARY = "primary";
+
+    private final HikariDataSource primary;
+    private final List<HikariDataSource> replicas;
+    private final Selection selection;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    public ReadWriteRoutingDataSource(HikariDataSource primary, List<HikariDataSource> replicas, Selection selection) {
+        this.primary = primary;
+        this.replicas = new ArrayList<>(replicas);
+        this.selection = selection;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        replicas.forEach(replica -> targets.put(replica.getPoolName(), replica));
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty()
+                || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || ReadYourWrites.isPinned()) {
+            return PRIMARY;
+        }
+        return selectReplica().getPoolName();
+    }
+
+    private HikariDataSource selectReplica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (selection == Selection.ROUND_ROBIN) {
+            return replicas.get(start);
+        }
+        // scan from the round-robin position, so that equally loaded replicas still take turns
+        HikariDataSource least = null;
+        int leastLoad = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            HikariDataSource replica = replicas.get((start + i) % replicas.size());
+            int load = load(replica);
+            if (load < leastLoad) {
+                least = replica;
+                leastLoad = load;
+            }
+        }
+        return least;
+    }
+
+    private static int load(HikariDataSource pool) {
+        HikariPoolMXBean bean = pool.getHikariPoolMXBean();
+        // null until the pool has handed out its first connection
+        return bean == null ? 0 : bean.getActiveConnections() + bean.getThreadsAwaitingConnection();
+    }
+
+    /**
+     * Reads from the primary when the chosen replica can't give a connection.
+     */
+    @Override
+    public Connection getConnection() throws SQLException {
+        Object key = determineCurrentLookupKey();
+        if (PRIMARY.equals(key)) {
+            return primary.getConnection();
+        }
+        replicaReads.increment();
+        try {
+            return getResolvedDataSources().get(key).getConnection();
+        } catch (SQLException e) {
+            fallbacks.increment();
+            return primary.getConnection();
+        }
+    }
+
+    List<HikariDataSource> getPools() {
+        List<HikariDataSource> pools = new ArrayList<>(replicas);
+        pools.add(0, primary);
+        return pools;
+    }
+
+    public long getReplicaReads() {
+        return replicaReads.sum();
+    }
+
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public void close() {
+        replicas.forEach(HikariDataSource::close);
+        primary.close();
+    }
+}
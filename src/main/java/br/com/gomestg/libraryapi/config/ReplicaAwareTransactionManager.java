@@ -0,0 +1,41 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.service.ReadYourWrites;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Keeps what read-only transactions read from a replica out of Hibernate's second-level and
+ * query caches, where it would outlive the write that made it stale: such transactions may read
+ * the caches but not fill them. Transactions of a thread pinned with {@link ReadYourWrites} skip
+ * the caches and refresh them from the primary instead.
+ */
+public class ReplicaAwareTransactionManager extends JpaTransactionManager {
+
+    private static final String RETRIEVE_MODE = "javax.persistence.cache.retrieveMode";
+    private static final String STORE_MODE = "javax.persistence.cache.storeMode";
+
+    public ReplicaAwareTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        super.doBegin(transaction, definition);
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(obtainEntityManagerFactory());
+        EntityManager entityManager = holder.getEntityManager();
+        // set on every transaction, as with open-in-view one entity manager serves several of them;
+        // as properties rather than a session cache mode, which EntityManager.find overrides with them
+        entityManager.setProperty(RETRIEVE_MODE, ReadYourWrites.isPinned() ? CacheRetrieveMode.BYPASS : CacheRetrieveMode.USE);
+        entityManager.setProperty(STORE_MODE, ReadYourWrites.isPinned() ? CacheStoreMode.REFRESH
+                : definition.isReadOnly() ? CacheStoreMode.BYPASS
+                : CacheStoreMode.USE);
+    }
+}
@@ -0,0 +1,93 @@
+package br.com.gomestg.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.transaction.TransactionManagerCustomizers;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Opt-in ({@code library.replicas.enabled=true}) routing of read-only transactions to the
+ * replicas in {@code library.replicas.urls}, picked by {@code library.replicas.selection}
+ * ({@code round-robin} or {@code least-loaded}). Every pool takes the
+ * {@code spring.datasource.hikari} settings and the primary's credentials.
+ * <p>
+ * Reads that must see a client's own writes go to the primary, see {@link ReadYourWritesFilter}.
+ * Caches are only filled from the primary: reads from a replica don't reach Hibernate's caches,
+ * see {@link ReplicaAwareTransactionManager}, nor the {@code books} cache, and the response cache
+ * is left out.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("!reactive")
+@ConditionalOnProperty(name = "library.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfiguration {
+
+    @Bean
+    public ReadWriteRoutingDataSource readWriteRoutingDataSource(DataSourceProperties properties,
+                                                                 Environment environment,
+                                                                 @Value("${library.replicas.urls}") List<String> urls,
+                                                                 @Value("${library.replicas.selection}") String selection) {
+        HikariDataSource primary = DataSourcePools.create("primary", properties.determineUrl(), properties, environment);
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            replicas.add(DataSourcePools.create("replica-" + (i + 1), urls.get(i), properties, environment));
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas,
+                ReadWriteRoutingDataSource.Selection.valueOf(selection.toUpperCase(Locale.ROOT).replace('-', '_')));
+    }
+
+    /**
+     * What the application and JPA see as the data source.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ReadWriteRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * In place of the one Spring Boot would set up, see {@link ReplicaAwareTransactionManager}.
+     */
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory,
+                                                         ObjectProvider<TransactionManagerCustomizers> customizers) {
+        ReplicaAwareTransactionManager transactionManager = new ReplicaAwareTransactionManager(entityManagerFactory);
+        customizers.ifAvailable(customizer -> customizer.customize(transactionManager));
+        return transactionManager;
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${library.replicas.read-your-writes}") Duration window) {
+        return new ReadYourWritesFilter(window);
+    }
+
+    @Bean
+    public MeterBinder replicaRoutingMetrics(ReadWriteRoutingDataSource routing) {
+        return registry -> {
+            DataSourcePools.bindMetrics(routing.getPools(), registry);
+            FunctionCounter.builder("library.datasource.replica.reads", routing, ReadWriteRoutingDataSource::getReplicaReads)
+                    .description("Connections handed out by a replica for a read-only transaction")
+                    .register(registry);
+            FunctionCounter.builder("library.datasource.replica.fallbacks", routing, ReadWriteRoutingDataSource::getFallbacks)
+                    .description("Read-only transactions sent to the primary because their replica failed")
+                    .register(registry);
+        };
+    }
+}
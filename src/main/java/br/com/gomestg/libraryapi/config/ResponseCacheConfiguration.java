@@ -0,0 +1,104 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.api.resource.BookResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.apache.catalina.connector.CoyoteOutputStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Opt-in ({@code library.response-cache.enabled=true}) {@link BookResponseCache} for
+ * {@code GET /api/books/{id}}, bounded by {@code library.response-cache.max-size}.
+ * <p>
+ * Left out with replicas: books by id are read from them, and a body encoded from a replica
+ * that lags behind would be served until the book is written again.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("!reactive")
+@ConditionalOnExpression("${library.response-cache.enabled} and !${library.replicas.enabled}")
+public class ResponseCacheConfiguration implements WebMvcConfigurer {
+
+    @Bean
+    public BookResponseCache bookResponseCache(ObjectMapper objectMapper,
+                                               Jackson2ObjectMapperBuilder builder,
+                                               @Value("${library.response-cache.max-size}") DataSize maxSize) {
+        Map<MediaType, ObjectWriter> writers = new LinkedHashMap<>();
+        writers.put(MediaType.APPLICATION_JSON, objectMapper.writer());
+        writers.put(MediaType.APPLICATION_CBOR, builder.factory(new CBORFactory()).build().writer());
+        writers.put(new MediaType("application", "x-jackson-smile"), builder.factory(new SmileFactory()).build().writer());
+        return new BookResponseCache(writers, maxSize.toBytes());
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        converters.add(0, new ByteBufferHttpMessageConverter());
+    }
+
+    /**
+     * Writes a cached body as it is. On Tomcat the off-heap buffer is copied straight into the
+     * connector's output buffer; elsewhere it goes through the stream in small chunks.
+     */
+    static class ByteBufferHttpMessageConverter extends AbstractHttpMessageConverter<ByteBuffer> {
+
+        ByteBufferHttpMessageConverter() {
+            super(MediaType.ALL);
+        }
+
+        @Override
+        protected boolean supports(Class<?> clazz) {
+            return ByteBuffer.class.isAssignableFrom(clazz);
+        }
+
+        @Override
+        protected boolean canRead(MediaType mediaType) {
+            return false;
+        }
+
+        @Override
+        protected ByteBuffer readInternal(Class<? extends ByteBuffer> clazz, HttpInputMessage inputMessage) {
+            throw new HttpMessageNotReadableException("Byte buffers are only written", inputMessage);
+        }
+
+        @Override
+        protected Long getContentLength(ByteBuffer buffer, MediaType contentType) {
+            return (long) buffer.remaining();
+        }
+
+        @Override
+        protected void writeInternal(ByteBuffer buffer, HttpOutputMessage outputMessage) throws IOException {
+            OutputStream body = outputMessage.getBody();
+            if (body instanceof CoyoteOutputStream) {
+                ((CoyoteOutputStream) body).write(buffer);
+                return;
+            }
+            WritableByteChannel channel = Channels.newChannel(body);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.model.shard.BookShardRebalancer;
+import br.com.gomestg.libraryapi.model.shard.BookShards;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Opt-in ({@code library.shards.enabled=true}) split of the catalog by ISBN over
+ * {@code spring.datasource.url}, as shard 0, and the databases in {@code library.shards.urls},
+ * see {@link BookShards}. Every pool takes the {@code spring.datasource.hikari} settings and the
+ * primary's credentials. Not to be combined with {@code library.replicas}.
+ * <p>
+ * JPA only sets up shard 0; the others need the {@code book} table and {@code book_seq} in place,
+ * as created by whatever migrates shard 0's schema.
+ * <p>
+ * With {@code library.shards.rebalance=true}, books are moved to their shards at startup, before
+ * any request is served, including those on the databases in {@code library.shards.retired-urls}.
+ * Otherwise, with {@code library.shards.check-ids=true}, startup fails on books whose ids were
+ * given out before sharding, see {@link BookShardRebalancer#checkIds}.
+ */
+@Configuration(proxyBeanMethods = false)
+@Profile("!reactive")
+@ConditionalOnProperty(name = "library.shards.enabled", havingValue = "true")
+public class ShardingConfiguration {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(DataSourceProperties properties, Environment environment,
+                                                         @Value("${library.shards.urls}") List<String> urls) {
+        List<HikariDataSource> shards = new ArrayList<>(urls.size() + 1);
+        shards.add(DataSourcePools.create("shard-0", properties.determineUrl(), properties, environment));
+        for (int i = 0; i < urls.size(); i++) {
+            shards.add(DataSourcePools.create("shard-" + (i + 1), urls.get(i), properties, environment));
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * What the application and JPA see as the data source. Lazy, so that a transaction opened on
+     * a thread not bound to any shard only takes a connection if it runs a statement.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    /**
+     * Takes the entity manager factory for its dialect, which says how to draw from {@code book_seq}.
+     */
+    @Bean
+    public BookShards bookShards(ShardRoutingDataSource routing, EntityManagerFactory entityManagerFactory) {
+        String nextValue = entityManagerFactory.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect()
+                .getSequenceNextValString("book_seq");
+        return new BookShards(routing.getShards(), nextValue);
+    }
+
+    @Bean
+    public BookShardRebalancer bookShardRebalancer(BookShards shards) {
+        return new BookShardRebalancer(shards);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "library.shards.rebalance", havingValue = "true")
+    public SmartInitializingSingleton rebalanceShardsOnStartup(BookShardRebalancer rebalancer,
+                                                               DataSourceProperties properties, Environment environment,
+                                                               @Value("${library.shards.retired-urls}") List<String> urls) {
+        return () -> {
+            List<HikariDataSource> retired = new ArrayList<>(urls.size());
+            for (int i = 0; i < urls.size(); i++) {
+                retired.add(DataSourcePools.create("retired-shard-" + i, urls.get(i), properties, environment));
+            }
+            try {
+                rebalancer.rebalance(retired);
+            } finally {
+                retired.forEach(HikariDataSource::close);
+            }
+        };
+    }
+
+    /**
+     * Left to the rebalancing above when it runs, which checks the ids before moving any book.
+     */
+    @Bean
+    @ConditionalOnExpression("${library.shards.check-ids} and !${library.shards.rebalance}")
+    public SmartInitializingSingleton checkShardIdsOnStartup(BookShardRebalancer rebalancer) {
+        return rebalancer::checkIds;
+    }
+
+    @Bean
+    public MeterBinder shardMetrics(ShardRoutingDataSource routing) {
+        return registry -> DataSourcePools.bindMetrics(routing.getShards(), registry);
+    }
+}
@@ -0,0 +1,94 @@
+package br.com.gomestg.libraryapi.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Opt-in ({@code library.virtual-threads.enabled=true}) execution of every request, and so
+ * every blocking repository call, on its own virtual thread. Requires a Java 21+ runtime;
+ * the build itself stays on the Java 11 baseline, so the executor is looked up reflectively.
+ * <p>
+ * As virtual threads no longer cap concurrency at the Tomcat pool size, connections are
+ * rationed by a {@link ConnectionLimitingDataSource} sized to the Hikari pool.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "library.virtual-threads.enabled", havingValue = "true")
+public class VirtualThreadConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        return protocolHandler -> protocolHandler.setExecutor(executor);
+    }
+
+    @Bean
+    public static BeanPostProcessor connectionLimitingDataSourcePostProcessor() {
+        return new ConnectionLimitingPostProcessor();
+    }
+
+    /**
+     * Requests wait for a connection in the limiter rather than in Hikari, so its queue is what
+     * {@code hikaricp.connections.pending} would otherwise show.
+     */
+    @Bean
+    public MeterBinder connectionLimitMetrics(ObjectProvider<DataSource> dataSource) {
+        return registry -> {
+            if (dataSource.getIfUnique() instanceof ConnectionLimitingDataSource) {
+                ConnectionLimitingDataSource limited = (ConnectionLimitingDataSource) dataSource.getIfUnique();
+                Gauge.builder("library.datasource.permits.available", limited, ConnectionLimitingDataSource::getAvailablePermits)
+                        .description("Connections that can be handed out without waiting")
+                        .register(registry);
+                Gauge.builder("library.datasource.permits.waiting", limited, ConnectionLimitingDataSource::getQueueLength)
+                        .description("Threads waiting for a connection")
+                        .register(registry);
+            }
+        };
+    }
+
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("library.virtual-threads.enabled requires a Java 21+ runtime, running "
+                    + System.getProperty("java.version"));
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Could not create the virtual thread executor", e);
+        }
+    }
+
+    /**
+     * Wraps the Hikari pool before any other post-processor gets to decorate it.
+     */
+    static class ConnectionLimitingPostProcessor implements BeanPostProcessor, Ordered {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof HikariDataSource) {
+                HikariDataSource dataSource = (HikariDataSource) bean;
+                // applies Hikari's defaults, the pool size is -1 until then
+                dataSource.validate();
+                return new ConnectionLimitingDataSource(dataSource,
+                        dataSource.getMaximumPoolSize(), dataSource.getConnectionTimeout());
+            }
+            return bean;
+        }
+
+        @Override
+        public int getOrder() {
+            return Ordered.HIGHEST_PRECEDENCE;
+        }
+    }
+}
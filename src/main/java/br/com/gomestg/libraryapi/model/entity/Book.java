@@ -4,6 +4,10 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import javax.persistence.*;
 
@@ -12,12 +16,22 @@ import javax.persistence.*;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
-@Table
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "book")
+@Table(indexes = @Index(name = "ux_book_isbn", columnList = "isbn", unique = true))
 public class Book {
 
+    /**
+     * Ids taken from {@code book_seq} per round trip, which is also what it is incremented by.
+     */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
     @Id
     @Column
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(generator = "book_seq")
+    @GenericGenerator(name = "book_seq", strategy = "br.com.gomestg.libraryapi.model.entity.BookIdGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "book_seq"),
+            @Parameter(name = "increment_size", value = "" + ID_ALLOCATION_SIZE)})
     private Long id;
     @Column
     private String title;
@@ -25,4 +39,7 @@ public class Book {
     private String author;
     @Column
     private String isbn;
+    @Version
+    @Column
+    private Long version;
 }
@@ -0,0 +1,23 @@
+package br.com.gomestg.libraryapi.model.entity;
+
+import br.com.gomestg.libraryapi.model.shard.BookShards;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.io.Serializable;
+
+/**
+ * {@code book_seq}, except for books saved on a shard, which come with the id
+ * {@link BookShards#assignId} gave them.
+ */
+public class BookIdGenerator extends SequenceStyleGenerator {
+
+    @Override
+    public Serializable generate(SharedSessionContractImplementor session, Object object) {
+        Long assigned = ((Book) object).getId();
+        if (assigned != null && BookShards.currentShard() != null) {
+            return assigned;
+        }
+        return super.generate(session, object);
+    }
+}
@@ -1,10 +1,85 @@
 package br.com.gomestg.libraryapi.model.repository;
 
 import br.com.gomestg.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 
-public interface BookRepository extends JpaRepository<Book, Long> {
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+
+public interface BookRepository extends JpaRepository<Book, Long>, BookRepositoryCustom {
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
     boolean existsByIsbn(String isbn);
 
+    @QueryHints(@QueryHint(name = HINT_CACHEABLE, value = "true"))
+    Optional<Book> findByIsbn(String isbn);
+
+    List<Book> findByIsbnIn(Collection<String> isbns);
+
+    /**
+     * Read in a read-write transaction, so that with replicas it is checked against the primary:
+     * a lagging replica would miss ISBNs registered moments ago.
+     */
+    @Transactional
+    @Query("select b.isbn from Book b where b.isbn in :isbns")
+    Set<String> findRegisteredIsbns(@Param("isbns") Collection<String> isbns);
+
+    /**
+     * Updates title and author in a single statement, optionally only while the book
+     * still has the given version.
+     *
+     * @return number of updated rows
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("update Book b set b.title = :title, b.author = :author, b.version = b.version + 1"
+            + " where b.id = :id and (:version is null or b.version = :version)")
+    int updateTitleAndAuthor(@Param("id") Long id,
+                             @Param("title") String title,
+                             @Param("author") String author,
+                             @Param("version") Long version);
+
+    /**
+     * Deletes a book in a single statement, optionally only while it still has the given version.
+     *
+     * @return number of deleted rows
+     */
+    @Transactional
+    @Modifying(clearAutomatically = true)
+    @Query("delete from Book b where b.id = :id and (:version is null or b.version = :version)")
+    int deleteByIdAndVersion(@Param("id") Long id, @Param("version") Long version);
+
+    @Query("select b from Book b where b.id > :after"
+            + " and (:title is null or lower(b.title) like lower(concat('%', :title, '%')))"
+            + " and (:author is null or lower(b.author) like lower(concat('%', :author, '%')))"
+            + " and (:isbn is null or lower(b.isbn) like lower(concat('%', :isbn, '%')))"
+            + " order by b.id")
+    Slice<Book> findAfter(@Param("after") Long after,
+                          @Param("title") String title,
+                          @Param("author") String author,
+                          @Param("isbn") String isbn,
+                          Pageable pageable);
+
+    /**
+     * Forward-only cursor over the whole catalog in id order. Rows are read through a
+     * constructor expression, so they are never attached to the persistence context.
+     * Must be consumed inside a transaction and closed.
+     */
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new br.com.gomestg.libraryapi.model.entity.Book(b.id, b.title, b.author, b.isbn, b.version)"
+            + " from Book b order by b.id")
+    Stream<Book> streamAll();
 }
@@ -0,0 +1,50 @@
+package br.com.gomestg.libraryapi.model.repository;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+public interface BookRepositoryCustom {
+
+    /**
+     * Same matching as the case-insensitive, contains-based {@code Example} query, but selects
+     * only the given fields into unmanaged {@link Book} instances; other fields are left null.
+     */
+    Page<Book> findProjected(Book filter, Set<String> fields, Pageable pageable);
+
+    /**
+     * As {@link #findProjected(Book, Set, Pageable)}, with the total taken from {@code total}
+     * whenever it can't be worked out from the page itself.
+     */
+    Page<Book> findProjected(Book filter, Set<String> fields, Pageable pageable, LongSupplier total);
+
+    /**
+     * As {@link #findProjected(Book, Set, Pageable)}, without any total: reads one row past the
+     * page to tell whether there is a next one.
+     */
+    Slice<Book> findProjectedSlice(Book filter, Set<String> fields, Pageable pageable);
+
+    /**
+     * Exact number of books matching the filter.
+     */
+    long countMatching(Book filter);
+
+    /**
+     * Approximate number of books matching the filter: the table's row count estimate from the
+     * database's statistics, scaled by how many of about {@value BookRepositoryImpl#ESTIMATE_SAMPLE_SIZE}
+     * books match, taken from id ranges spread over the whole table. Small tables and id lookups
+     * are counted exactly, as is the table on databases without known statistics.
+     */
+    long estimateCount(Book filter);
+
+    /**
+     * Query-by-example page whose content and count queries both go through the query cache,
+     * invalidated whenever Hibernate writes to the book table.
+     */
+    <S extends Book> Page<S> findAll(Example<S> example, Pageable pageable);
+}
@@ -0,0 +1,278 @@
+package br.com.gomestg.libraryapi.model.repository;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MySQLDialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.dialect.SQLServerDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.convert.QueryByExamplePredicateBuilder;
+import org.springframework.data.jpa.repository.query.EscapeCharacter;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+
+public class BookRepositoryImpl implements BookRepositoryCustom {
+
+    static final int ESTIMATE_SAMPLE_SIZE = 10_000;
+    static final int ESTIMATE_SAMPLE_RANGES = 20;
+
+    private static final EscapeCharacter ESCAPE = EscapeCharacter.DEFAULT;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> findProjected(Book filter, Set<String> fields, Pageable pageable) {
+        return findProjected(filter, fields, pageable, () -> countMatching(filter));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<Book> findProjected(Book filter, Set<String> fields, Pageable pageable, LongSupplier total) {
+        List<Book> content = pageable.isPaged()
+                ? findProjected(filter, fields, pageable.getSort(), (int) pageable.getOffset(), pageable.getPageSize())
+                : findProjected(filter, fields, pageable.getSort(), 0, Integer.MAX_VALUE);
+        return PageableExecutionUtils.getPage(content, pageable, total);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Slice<Book> findProjectedSlice(Book filter, Set<String> fields, Pageable pageable) {
+        if (pageable.isUnpaged()) {
+            return new SliceImpl<>(findProjected(filter, fields, pageable.getSort(), 0, Integer.MAX_VALUE), pageable, false);
+        }
+        List<Book> content = findProjected(filter, fields, pageable.getSort(),
+                (int) pageable.getOffset(), pageable.getPageSize() + 1);
+        boolean hasNext = content.size() > pageable.getPageSize();
+        return new SliceImpl<>(hasNext ? content.subList(0, pageable.getPageSize()) : content, pageable, hasNext);
+    }
+
+    private List<Book> findProjected(Book filter, Set<String> fields, Sort sort, int offset, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Book> root = query.from(Book.class);
+
+        List<String> columns = new ArrayList<>(fields);
+        List<Selection<?>> selections = new ArrayList<>(columns.size());
+        for (String column : columns) {
+            selections.add(root.get(column).alias(column));
+        }
+        query.multiselect(selections)
+                .where(predicates(cb, root, filter))
+                .orderBy(orders(sort, root, cb));
+
+        TypedQuery<Tuple> typedQuery = entityManager.createQuery(query).setFirstResult(offset);
+        if (limit < Integer.MAX_VALUE) {
+            typedQuery.setMaxResults(limit);
+        }
+        List<Tuple> rows = typedQuery.getResultList();
+        List<Book> content = new ArrayList<>(rows.size());
+        for (Tuple row : rows) {
+            content.add(toBook(row, columns));
+        }
+        return content;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public <S extends Book> Page<S> findAll(Example<S> example, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<S> query = cb.createQuery(example.getProbeType());
+        Root<S> root = query.from(example.getProbeType());
+        Predicate predicate = QueryByExamplePredicateBuilder.getPredicate(root, cb, example, ESCAPE);
+        query.select(root).orderBy(orders(pageable.getSort(), root, cb));
+        if (predicate != null) {
+            query.where(predicate);
+        }
+
+        TypedQuery<S> typedQuery = entityManager.createQuery(query).setHint(HINT_CACHEABLE, true);
+        if (pageable.isPaged()) {
+            typedQuery.setFirstResult((int) pageable.getOffset());
+            typedQuery.setMaxResults(pageable.getPageSize());
+        }
+        return PageableExecutionUtils.getPage(typedQuery.getResultList(), pageable, () -> count(example));
+    }
+
+    /**
+     * The sort's orders followed by the id, so that books equal in every sorted field still come
+     * in the same order on every page, and in the order {@link br.com.gomestg.libraryapi.model.shard.ShardedPages}
+     * merges them in.
+     */
+    private static List<Order> orders(Sort sort, Root<?> root, CriteriaBuilder cb) {
+        List<Order> orders = new ArrayList<>(QueryUtils.toOrders(sort, root, cb));
+        if (sort.getOrderFor("id") == null) {
+            orders.add(cb.asc(root.get("id")));
+        }
+        return orders;
+    }
+
+    private <S extends Book> long count(Example<S> example) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<S> root = query.from(example.getProbeType());
+        Predicate predicate = QueryByExamplePredicateBuilder.getPredicate(root, cb, example, ESCAPE);
+        query.select(cb.count(root));
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        return entityManager.createQuery(query).setHint(HINT_CACHEABLE, true).getSingleResult();
+    }
+
+    @Override
+    public long countMatching(Book filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = cb.createQuery(Long.class);
+        Root<Book> root = query.from(Book.class);
+        query.select(cb.count(root)).where(predicates(cb, root, filter));
+        return entityManager.createQuery(query).getSingleResult();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long estimateCount(Book filter) {
+        if (filter.getId() != null) {
+            return countMatching(filter);
+        }
+        long rows = estimateRows();
+        if (filter.getTitle() == null && filter.getAuthor() == null && filter.getIsbn() == null) {
+            return rows;
+        }
+        if (rows <= ESTIMATE_SAMPLE_SIZE) {
+            return countMatching(filter);
+        }
+        Object[] ids = entityManager.createQuery("select min(b.id), max(b.id) from Book b", Object[].class).getSingleResult();
+        if (ids[0] == null) {
+            return 0;
+        }
+        long min = (Long) ids[0];
+        double span = (Long) ids[1] - min + 1;
+        // ranges spread over all ids, so that old and new books are sampled alike
+        double gap = span / ESTIMATE_SAMPLE_RANGES;
+        double width = Math.max(1, span / rows * ESTIMATE_SAMPLE_SIZE / ESTIMATE_SAMPLE_RANGES);
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Book> root = query.from(Book.class);
+        Predicate[] ranges = new Predicate[ESTIMATE_SAMPLE_RANGES];
+        for (int i = 0; i < ranges.length; i++) {
+            long from = min + (long) (i * gap);
+            ranges[i] = cb.between(root.get("id"), from, from + (long) Math.min(width, gap) - 1);
+        }
+        Expression<Integer> matching = cb.<Integer>selectCase()
+                .when(cb.and(predicates(cb, root, filter)), 1)
+                .otherwise(0);
+        query.multiselect(cb.count(root), cb.sum(matching)).where(cb.or(ranges));
+        Tuple sample = entityManager.createQuery(query).getSingleResult();
+        long sampled = sample.get(0, Long.class);
+        if (sampled == 0) {
+            return countMatching(filter);
+        }
+        return Math.round(((Number) sample.get(1)).doubleValue() * rows / sampled);
+    }
+
+    /**
+     * The database's own estimate of the table's size, kept by its statistics without scanning
+     * the table, or the exact count where there is none.
+     */
+    private long estimateRows() {
+        String statistics = rowCountEstimate(entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect());
+        if (statistics != null) {
+            List<?> estimate = entityManager.createNativeQuery(statistics).getResultList();
+            // never analyzed: null, or -1 on PostgreSQL
+            if (!estimate.isEmpty() && estimate.get(0) instanceof Number && ((Number) estimate.get(0)).longValue() >= 0) {
+                return ((Number) estimate.get(0)).longValue();
+            }
+        }
+        return entityManager.createQuery("select count(b) from Book b", Long.class).getSingleResult();
+    }
+
+    /**
+     * @return the query for the book table's row count estimate, null for a database whose
+     * statistics are not known here
+     */
+    static String rowCountEstimate(Dialect dialect) {
+        if (dialect instanceof H2Dialect) {
+            return "select row_count_estimate from information_schema.tables where table_name = 'BOOK'";
+        }
+        if (dialect instanceof PostgreSQL81Dialect) {
+            return "select cast(reltuples as bigint) from pg_class where oid = to_regclass('book')";
+        }
+        if (dialect instanceof MySQLDialect) {
+            return "select table_rows from information_schema.tables where table_schema = database() and table_name = 'book'";
+        }
+        if (dialect instanceof SQLServerDialect) {
+            return "select sum(row_count) from sys.dm_db_partition_stats where object_id = object_id('book') and index_id < 2";
+        }
+        if (dialect instanceof Oracle8iDialect) {
+            return "select num_rows from user_tables where table_name = 'BOOK'";
+        }
+        return null;
+    }
+
+    private static Predicate[] predicates(CriteriaBuilder cb, Root<Book> root, Book filter) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.getId() != null) {
+            predicates.add(cb.equal(root.get("id"), filter.getId()));
+        }
+        addContaining(predicates, cb, root.get("title"), filter.getTitle());
+        addContaining(predicates, cb, root.get("author"), filter.getAuthor());
+        addContaining(predicates, cb, root.get("isbn"), filter.getIsbn());
+        return predicates.toArray(new Predicate[0]);
+    }
+
+    private static void addContaining(List<Predicate> predicates, CriteriaBuilder cb, Path<String> path, String value) {
+        if (value != null) {
+            predicates.add(cb.like(cb.lower(path), "%" + ESCAPE.escape(value.toLowerCase()) + "%", ESCAPE.getEscapeCharacter()));
+        }
+    }
+
+    private static Book toBook(Tuple row, List<String> columns) {
+        Book book = new Book();
+        for (String column : columns) {
+            Object value = row.get(column);
+            switch (column) {
+                case "id":
+                    book.setId((Long) value);
+                    break;
+                case "title":
+                    book.setTitle((String) value);
+                    break;
+                case "author":
+                    book.setAuthor((String) value);
+                    break;
+                case "isbn":
+                    book.setIsbn((String) value);
+                    break;
+                case "version":
+                    book.setVersion((Long) value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown book field: " + column);
+            }
+        }
+        return book;
+    }
+}
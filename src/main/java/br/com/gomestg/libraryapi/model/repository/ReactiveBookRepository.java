@@ -0,0 +1,189 @@
+package br.com.gomestg.libraryapi.model.repository;
+
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import io.r2dbc.spi.Row;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.relational.core.dialect.Escaper;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.r2dbc.core.DatabaseClient.GenericExecuteSpec;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Non-blocking counterpart of {@link BookRepository} for the {@code reactive} profile,
+ * reading and writing the same {@code book} table through R2DBC.
+ */
+@Repository
+@Profile("reactive")
+public class ReactiveBookRepository {
+
+    private static final String COLUMNS = "id, title, author, isbn, version";
+    private static final Set<String> SORTABLE = new HashSet<>(Arrays.asList("id", "title", "author", "isbn"));
+    private static final Escaper ESCAPER = Escaper.DEFAULT;
+
+    private final DatabaseClient client;
+
+    public ReactiveBookRepository(DatabaseClient client) {
+        this.client = client;
+    }
+
+    public Mono<Book> findById(Long id) {
+        return client.sql("select " + COLUMNS + " from book where id = :id")
+                .bind("id", id)
+                .map(ReactiveBookRepository::toBook)
+                .one();
+    }
+
+    /**
+     * Inserts a book with version 0. Each {@code book_seq} value is the top of a block Hibernate
+     * would reserve, so using it directly as the id never collides with ids handed out by JPA.
+     */
+    public Mono<Book> insert(Book book) {
+        return client.sql("select next value for book_seq")
+                .map(row -> row.get(0, Long.class))
+                .one()
+                .flatMap(id -> {
+                    GenericExecuteSpec spec = client.sql("insert into book (" + COLUMNS + ")"
+                            + " values (:id, :title, :author, :isbn, 0)")
+                            .bind("id", id);
+                    spec = bind(spec, "title", book.getTitle());
+                    spec = bind(spec, "author", book.getAuthor());
+                    spec = bind(spec, "isbn", book.getIsbn());
+                    return spec.then().thenReturn(new Book(id, book.getTitle(), book.getAuthor(), book.getIsbn(), 0L));
+                });
+    }
+
+    /**
+     * Updates title and author in a single statement, optionally only while the book
+     * still has the given version.
+     *
+     * @return number of updated rows
+     */
+    public Mono<Integer> updateTitleAndAuthor(Long id, String title, String author, Long version) {
+        String sql = "update book set title = :title, author = :author, version = version + 1 where id = :id";
+        GenericExecuteSpec spec = client.sql(version == null ? sql : sql + " and version = :version").bind("id", id);
+        spec = bind(spec, "title", title);
+        spec = bind(spec, "author", author);
+        if (version != null) {
+            spec = spec.bind("version", version);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Deletes a book in a single statement, optionally only while it still has the given version.
+     *
+     * @return number of deleted rows
+     */
+    public Mono<Integer> deleteByIdAndVersion(Long id, Long version) {
+        String sql = "delete from book where id = :id";
+        GenericExecuteSpec spec = client.sql(version == null ? sql : sql + " and version = :version").bind("id", id);
+        if (version != null) {
+            spec = spec.bind("version", version);
+        }
+        return spec.fetch().rowsUpdated();
+    }
+
+    /**
+     * Books whose non-null fields of {@code filter} match: id by equality, the others by
+     * case-insensitive containment. Unsorted pages are ordered by id.
+     */
+    public Flux<Book> find(Book filter, Pageable pageable) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        StringBuilder sql = new StringBuilder("select ").append(COLUMNS).append(" from book")
+                .append(where(filter, params))
+                .append(orderBy(pageable.getSort()));
+        if (pageable.isPaged()) {
+            sql.append(" limit ").append(pageable.getPageSize()).append(" offset ").append(pageable.getOffset());
+        }
+        return bindAll(client.sql(sql.toString()), params)
+                .map(ReactiveBookRepository::toBook)
+                .all();
+    }
+
+    public Mono<Long> count(Book filter) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        return bindAll(client.sql("select count(*) from book" + where(filter, params)), params)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    /**
+     * Keyset page: at most {@code limit} books matching {@code filter} with an id greater than {@code after}, in id order.
+     */
+    public Flux<Book> findAfter(Book filter, Long after, int limit) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        params.put("after", after);
+        String where = where(filter, params);
+        String sql = "select " + COLUMNS + " from book"
+                + (where.isEmpty() ? " where" : where + " and") + " id > :after"
+                + " order by id limit " + limit;
+        return bindAll(client.sql(sql), params)
+                .map(ReactiveBookRepository::toBook)
+                .all();
+    }
+
+    private static String where(Book filter, Map<String, Object> params) {
+        List<String> predicates = new ArrayList<>();
+        if (filter.getId() != null) {
+            predicates.add("id = :id");
+            params.put("id", filter.getId());
+        }
+        addContaining(predicates, params, "title", filter.getTitle());
+        addContaining(predicates, params, "author", filter.getAuthor());
+        addContaining(predicates, params, "isbn", filter.getIsbn());
+        return predicates.isEmpty() ? "" : " where " + String.join(" and ", predicates);
+    }
+
+    private static void addContaining(List<String> predicates, Map<String, Object> params, String column, String value) {
+        if (value != null) {
+            predicates.add("lower(" + column + ") like :" + column + " escape '" + ESCAPER.getEscapeCharacter() + "'");
+            params.put(column, "%" + ESCAPER.escape(value.toLowerCase()) + "%");
+        }
+    }
+
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return " order by id";
+        }
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            if (!SORTABLE.contains(order.getProperty())) {
+                throw new LibraryBusinessException("Books cannot be sorted by " + order.getProperty());
+            }
+            orders.add(order.getProperty() + (order.isAscending() ? " asc" : " desc"));
+        }
+        return " order by " + String.join(", ", orders);
+    }
+
+    private static GenericExecuteSpec bindAll(GenericExecuteSpec spec, Map<String, Object> params) {
+        for (Map.Entry<String, Object> param : params.entrySet()) {
+            spec = spec.bind(param.getKey(), param.getValue());
+        }
+        return spec;
+    }
+
+    private static GenericExecuteSpec bind(GenericExecuteSpec spec, String name, String value) {
+        return value == null ? spec.bindNull(name, String.class) : spec.bind(name, value);
+    }
+
+    private static Book toBook(Row row) {
+        return new Book(row.get("id", Long.class),
+                row.get("title", String.class),
+                row.get("author", String.class),
+                row.get("isbn", String.class),
+                row.get("version", Long.class));
+    }
+}
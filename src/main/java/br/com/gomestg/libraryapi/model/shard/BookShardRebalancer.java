@@ -0,0 +1,180 @@
+package br.com.gomestg.libraryapi.model.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Moves books to the shard their bucket belongs to after shards were added or removed, keeping
+ * their ids. Each chunk is first written to its new shard, updating the books an interrupted run
+ * already copied there and inserting the rest, and then deleted from the old one, so an
+ * interrupted run leaves some books on both and is finished by running it again.
+ * <p>
+ * Meant to run while the application takes no traffic: until a book is moved, it is looked for
+ * on its new shard and not found.
+ * <p>
+ * Refuses to move anything while some book's id doesn't carry its bucket, see {@link #checkIds}.
+ */
+@Slf4j
+public class BookShardRebalancer {
+
+    static final int CHUNK_SIZE = 1000;
+
+    private static final int REPORTED_IDS = 5;
+
+    private static final String KEYS = "select id, isbn from book where id > ? order by id limit ?";
+    private static final String SELECT = "select id, title, author, isbn, version from book where id > ? order by id limit ?";
+    private static final String EXISTING = "select id from book where id in (%s)";
+    private static final String UPDATE = "update book set title = ?, author = ?, isbn = ?, version = ? where id = ?";
+    private static final String INSERT = "insert into book (id, title, author, isbn, version) values (?, ?, ?, ?, ?)";
+    private static final String DELETE = "delete from book where id = ?";
+
+    private final BookShards shards;
+
+    public BookShardRebalancer(BookShards shards) {
+        this.shards = shards;
+    }
+
+    public long rebalance() {
+        return rebalance(Collections.emptyList());
+    }
+
+    /**
+     * @param retired databases that were shards before and are to be emptied into the current ones
+     * @return the number of books moved
+     */
+    public long rebalance(List<? extends DataSource> retired) {
+        checkIds(retired);
+        long moved = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            moved += drain(shards.dataSource(shard), shard, "shard " + shard);
+        }
+        for (int i = 0; i < retired.size(); i++) {
+            moved += drain(retired.get(i), -1, "retired shard " + i);
+        }
+        log.info("Moved {} books between {} shards", moved, shards.count());
+        return moved;
+    }
+
+    public void checkIds() {
+        checkIds(Collections.emptyList());
+    }
+
+    /**
+     * Fails on books whose id doesn't carry the bucket of their ISBN, as ids given out before the
+     * catalog was sharded don't: they would be looked for by id, and moved, by the wrong bucket.
+     * Such books need new ids before the catalog can be sharded.
+     *
+     * @param retired databases that were shards before, checked as well
+     * @throws IllegalStateException naming the first few of them on each database
+     */
+    public void checkIds(List<? extends DataSource> retired) {
+        List<String> found = new ArrayList<>();
+        for (int shard = 0; shard < shards.count(); shard++) {
+            checkIds(shards.dataSource(shard), "shard " + shard, found);
+        }
+        for (int i = 0; i < retired.size(); i++) {
+            checkIds(retired.get(i), "retired shard " + i, found);
+        }
+        if (!found.isEmpty()) {
+            throw new IllegalStateException("Books with ids that don't carry the bucket of their ISBN, "
+                    + "as ids from before sharding don't: " + String.join("; ", found));
+        }
+    }
+
+    private static void checkIds(DataSource source, String name, List<String> found) {
+        JdbcTemplate jdbc = new JdbcTemplate(source);
+        List<Long> reported = new ArrayList<>(REPORTED_IDS);
+        long count = 0;
+        long after = 0;
+        List<Object[]> chunk;
+        do {
+            chunk = jdbc.query(KEYS, (rs, row) -> new Object[]{rs.getLong(1), rs.getString(2)}, after, CHUNK_SIZE);
+            for (Object[] book : chunk) {
+                long id = (Long) book[0];
+                if (BookShards.bucket(id) != BookShards.bucket((String) book[1]) && count++ < REPORTED_IDS) {
+                    reported.add(id);
+                }
+                after = id;
+            }
+        } while (chunk.size() == CHUNK_SIZE);
+        if (count > 0) {
+            found.add(count + " on " + name + ", e.g. " + reported);
+        }
+    }
+
+    /**
+     * Moves the books of one database that belong elsewhere.
+     *
+     * @param shard the database's own shard, whose books stay, or -1 to move all of them
+     */
+    private long drain(DataSource source, int shard, String name) {
+        JdbcTemplate jdbc = new JdbcTemplate(source);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(source));
+        long moved = 0;
+        long after = 0;
+        List<Object[]> chunk;
+        do {
+            long from = after;
+            chunk = jdbc.query(SELECT, (rs, row) -> new Object[]{
+                    rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4), rs.getObject(5)}, from, CHUNK_SIZE);
+            Map<Integer, List<Object[]>> byShard = new HashMap<>();
+            for (Object[] book : chunk) {
+                int target = shards.shard(BookShards.bucket((Long) book[0]));
+                if (target != shard) {
+                    byShard.computeIfAbsent(target, s -> new ArrayList<>()).add(book);
+                }
+                after = (Long) book[0];
+            }
+            byShard.forEach((target, books) -> {
+                DataSource destination = shards.dataSource(target);
+                new TransactionTemplate(new DataSourceTransactionManager(destination))
+                        .executeWithoutResult(status -> write(new JdbcTemplate(destination), books));
+                List<Object[]> ids = new ArrayList<>(books.size());
+                books.forEach(book -> ids.add(new Object[]{book[0]}));
+                transaction.executeWithoutResult(status -> jdbc.batchUpdate(DELETE, ids));
+            });
+            for (List<Object[]> books : byShard.values()) {
+                moved += books.size();
+            }
+        } while (chunk.size() == CHUNK_SIZE);
+        if (moved > 0) {
+            log.info("Moved {} books off {}", moved, name);
+        }
+        return moved;
+    }
+
+    private static void write(JdbcTemplate jdbc, List<Object[]> books) {
+        Object[] ids = new Object[books.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = books.get(i)[0];
+        }
+        Set<Long> existing = new HashSet<>(jdbc.queryForList(
+                String.format(EXISTING, String.join(", ", Collections.nCopies(ids.length, "?"))), Long.class, ids));
+        List<Object[]> updates = new ArrayList<>(existing.size());
+        List<Object[]> inserts = new ArrayList<>(books.size() - existing.size());
+        for (Object[] book : books) {
+            if (existing.contains((Long) book[0])) {
+                updates.add(new Object[]{book[1], book[2], book[3], book[4], book[0]});
+            } else {
+                inserts.add(book);
+            }
+        }
+        if (!updates.isEmpty()) {
+            jdbc.batchUpdate(UPDATE, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbc.batchUpdate(INSERT, inserts);
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package br.com.gomestg.libraryapi.model.shard;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Where each book lives when the catalog is split over several databases.
+ * <p>
+ * An ISBN hashes to one of {@value #BUCKETS} buckets, and bucket {@code b} lives on shard
+ * {@code b % count}. Ids are allocated per shard and carry their bucket, so a book is found by
+ * its id as well as by its ISBN, and carry the shard that allocated them, which keeps ids unique
+ * while every shard draws from its own {@code book_seq}:
+ * <pre>
+ *   id = sequence value &lt;&lt; 16 | allocating shard &lt;&lt; 10 | bucket
+ * </pre>
+ * Buckets never change, so when the number of shards does, {@link BookShardRebalancer} moves
+ * each book to its bucket's new shard under the same id. A database taking a shard index that
+ * an earlier, since removed one had must start its {@code book_seq} past that one's.
+ * <p>
+ * Repository calls for a shard go through {@link #on} or {@link #onEach}, which hand them to a
+ * thread of their own, bound to that shard: the caller's thread may hold a transaction or, with
+ * open-in-view, a connection to another one.
+ */
+public class BookShards implements Closeable {
+
+    public static final int BUCKETS = 1 << 10;
+
+    public static final int MAX_SHARDS = 1 << 6;
+
+    private static final int BUCKET_BITS = 10;
+    private static final int SHARD_BITS = 6;
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final List<DataSource> dataSources;
+    private final List<JdbcTemplate> sequences;
+    private final String nextValue;
+    private final long[] nextIds;
+    private final long[] idLimits;
+    private final ExecutorService executor;
+
+    /**
+     * The whole catalog in one database: everything runs on the caller's thread and ids come
+     * from Hibernate.
+     */
+    public static BookShards single() {
+        return new BookShards();
+    }
+
+    private BookShards() {
+        this.dataSources = new ArrayList<>();
+        this.sequences = new ArrayList<>();
+        this.nextValue = null;
+        this.nextIds = new long[0];
+        this.idLimits = new long[0];
+        this.executor = null;
+    }
+
+    /**
+     * @param dataSources each shard's own database, in shard order
+     */
+    public BookShards(List<? extends DataSource> dataSources) {
+        this(dataSources, "select next value for book_seq");
+    }
+
+    /**
+     * @param nextValue the statement that draws the next value from {@code book_seq}, which
+     *                  differs between databases
+     */
+    public BookShards(List<? extends DataSource> dataSources, String nextValue) {
+        if (dataSources.isEmpty() || dataSources.size() > MAX_SHARDS) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_SHARDS + " shards are supported");
+        }
+        this.dataSources = new ArrayList<>(dataSources);
+        this.sequences = new ArrayList<>(dataSources.size());
+        this.nextValue = nextValue;
+        dataSources.forEach(dataSource -> sequences.add(new JdbcTemplate(dataSource)));
+        this.nextIds = new long[dataSources.size()];
+        this.idLimits = new long[dataSources.size()];
+        AtomicInteger threads = new AtomicInteger();
+        // unbounded, as the shards' pools already limit how many of these run queries at once
+        this.executor = Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "book-shard-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return the shard the current thread's queries go to, null outside {@link #on} and {@link #onEach}
+     */
+    public static Integer currentShard() {
+        return CURRENT.get();
+    }
+
+    public boolean isSharded() {
+        return executor != null;
+    }
+
+    public int count() {
+        return Math.max(1, dataSources.size());
+    }
+
+    public DataSource dataSource(int shard) {
+        return dataSources.get(shard);
+    }
+
+    public static int bucket(String isbn) {
+        if (isbn == null) {
+            return 0;
+        }
+        // String.hashCode is fixed by the language spec, so buckets hold across JVMs and restarts
+        int hash = isbn.hashCode();
+        return (hash ^ (hash >>> 16)) & (BUCKETS - 1);
+    }
+
+    public static int bucket(long id) {
+        return (int) (id & (BUCKETS - 1));
+    }
+
+    public static long id(long sequence, int shard, int bucket) {
+        return sequence << (SHARD_BITS + BUCKET_BITS) | (long) shard << BUCKET_BITS | bucket;
+    }
+
+    public int shard(int bucket) {
+        return bucket % count();
+    }
+
+    public int forIsbn(String isbn) {
+        return shard(bucket(isbn));
+    }
+
+    public int forId(Long id) {
+        return id == null ? 0 : shard(bucket(id));
+    }
+
+    /**
+     * Gives a new book an id from its shard, where Hibernate would otherwise take one from the
+     * default database's sequence. Does nothing unless sharded.
+     *
+     * @return the book
+     */
+    public Book assignId(int shard, Book book) {
+        if (isSharded()) {
+            book.setId(id(nextSequence(shard), shard, bucket(book.getIsbn())));
+        }
+        return book;
+    }
+
+    /**
+     * Takes the shard's sequence values a block at a time, as Hibernate does with its own.
+     */
+    private synchronized long nextSequence(int shard) {
+        if (nextIds[shard] == idLimits[shard]) {
+            long start = sequences.get(shard).queryForObject(nextValue, Long.class);
+            nextIds[shard] = start;
+            idLimits[shard] = start + Book.ID_ALLOCATION_SIZE;
+        }
+        return nextIds[shard]++;
+    }
+
+    /**
+     * Runs work against one shard and waits for it.
+     */
+    public <T> T on(int shard, Supplier<T> work) {
+        if (!isSharded()) {
+            return work.get();
+        }
+        return join(CompletableFuture.supplyAsync(bound(shard, work), executor));
+    }
+
+    /**
+     * Runs work against each of the shards in parallel and waits for all of them.
+     *
+     * @return the results, in the order the shards were given
+     */
+    public <T> List<T> onEach(Collection<Integer> shards, IntFunction<T> work) {
+        if (!isSharded()) {
+            List<T> results = new ArrayList<>(shards.size());
+            shards.forEach(shard -> results.add(work.apply(shard)));
+            return results;
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+        for (Integer shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(bound(shard, () -> work.apply(shard)), executor));
+        }
+        List<T> results = new ArrayList<>(futures.size());
+        for (CompletableFuture<T> future : futures) {
+            results.add(join(future));
+        }
+        return results;
+    }
+
+    /**
+     * As {@link #onEach}, over every shard.
+     */
+    public <T> List<T> onAll(IntFunction<T> work) {
+        List<Integer> all = new ArrayList<>(count());
+        for (int shard = 0; shard < count(); shard++) {
+            all.add(shard);
+        }
+        return onEach(all, work);
+    }
+
+    private static <T> Supplier<T> bound(int shard, Supplier<T> work) {
+        return () -> {
+            CURRENT.set(shard);
+            try {
+                return work.get();
+            } finally {
+                CURRENT.remove();
+            }
+        };
+    }
+
+    /**
+     * Rethrows what the work threw, so callers see the same exceptions as without shards.
+     */
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.gomestg.libraryapi.model.shard;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Combines what each shard returned for the same page query into the page a single database
+ * would have returned. Every shard has to be asked for the rows up to the end of the page, as
+ * any of them may hold all of it.
+ */
+public final class ShardedPages {
+
+    private ShardedPages() {
+    }
+
+    /**
+     * Orders books as the database does for the sort: strings by code point, case-insensitively
+     * where asked to, and nulls below every value unless the sort says where they go. Ties are
+     * broken by ascending id, as the repository does, so the books compared need their id.
+     */
+    public static Comparator<Book> comparator(Sort sort) {
+        Comparator<Book> comparator = (a, b) -> 0;
+        for (Sort.Order order : sort) {
+            comparator = comparator.thenComparing(book -> property(book, order.getProperty()), order(order));
+        }
+        if (sort.getOrderFor("id") == null) {
+            comparator = comparator.thenComparing(Book::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<Object> order(Sort.Order order) {
+        Comparator<Object> values = order.isIgnoreCase()
+                ? (a, b) -> String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b)
+                : (a, b) -> ((Comparable) a).compareTo(b);
+        if (order.isDescending()) {
+            values = values.reversed();
+        }
+        boolean nullsFirst = order.getNullHandling() == Sort.NullHandling.NULLS_FIRST
+                || order.getNullHandling() == Sort.NullHandling.NATIVE && order.isAscending();
+        return nullsFirst ? Comparator.nullsFirst(values) : Comparator.nullsLast(values);
+    }
+
+    /**
+     * Merges lists that are each already in {@code order}.
+     *
+     * @return at most {@code limit} books, after skipping the first {@code offset}
+     */
+    public static List<Book> merge(List<? extends List<Book>> sorted, Comparator<Book> order, long offset, int limit) {
+        PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> order.compare(a.book, b.book));
+        for (List<Book> books : sorted) {
+            Iterator<Book> iterator = books.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator.next(), iterator));
+            }
+        }
+        List<Book> merged = new ArrayList<>(Math.min(limit, 1024));
+        for (long position = 0; !heads.isEmpty() && merged.size() < limit; position++) {
+            Head head = heads.poll();
+            if (position >= offset) {
+                merged.add(head.book);
+            }
+            if (head.rest.hasNext()) {
+                heads.add(new Head(head.rest.next(), head.rest));
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * A copy of the book with only the given fields, for when more were read than asked for.
+     */
+    public static Book only(Book book, Set<String> fields) {
+        return Book.builder()
+                .id(fields.contains("id") ? book.getId() : null)
+                .title(fields.contains("title") ? book.getTitle() : null)
+                .author(fields.contains("author") ? book.getAuthor() : null)
+                .isbn(fields.contains("isbn") ? book.getIsbn() : null)
+                .version(fields.contains("version") ? book.getVersion() : null)
+                .build();
+    }
+
+    private static Object property(Book book, String property) {
+        switch (property) {
+            case "id":
+                return book.getId();
+            case "title":
+                return book.getTitle();
+            case "author":
+                return book.getAuthor();
+            case "isbn":
+                return book.getIsbn();
+            case "version":
+                return book.getVersion();
+            default:
+                throw new IllegalArgumentException("Unknown book field: " + property);
+        }
+    }
+
+    private static class Head {
+
+        final Book book;
+        final Iterator<Book> rest;
+
+        Head(Book book, Iterator<Book> rest) {
+            this.book = book;
+            this.rest = rest;
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package br.com.gomestg.libraryapi.service;
+
+import lombok.Value;
+
+/**
+ * Published by {@link BookService} once a write to a book has gone through.
+ */
+@Value
+public class BookChangedEvent {
+
+    public enum Change {
+        CREATED, UPDATED, DELETED
+    }
+
+    Long id;
+    Change change;
+}
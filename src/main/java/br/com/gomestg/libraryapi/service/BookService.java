@@ -3,19 +3,52 @@ package br.com.gomestg.libraryapi.service;
 import br.com.gomestg.libraryapi.model.entity.Book;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public interface BookService {
     Book save(Book book);
 
+    List<Book> saveAll(List<Book> books);
+
     Optional<Book> getById(Long id);
 
+    Optional<Book> getByIsbn(String isbn);
+
+    /**
+     * Loads many books at once, with as few queries as possible.
+     *
+     * @return one entry per requested id, in request order, empty where there is no such book
+     */
+    List<Optional<Book>> getAllById(List<Long> ids);
+
+    /**
+     * @return one entry per requested ISBN, in request order, empty where there is no such book
+     * @see #getAllById
+     */
+    List<Optional<Book>> getAllByIsbn(List<String> isbns);
+
     void delete(Book book);
 
+    boolean deleteById(Long id, Long version);
+
     Book update(Book book);
 
+    boolean updateById(Long id, Book changes, Long version);
+
     Page<Book> find(Book filter, Pageable pageRequest);
+
+    Slice<Book> find(Book filter, Set<String> fields, Pageable pageRequest, CountStrategy count);
+
+    Slice<Book> findAfter(Book filter, Long after, int size);
+
+    Page<Book> search(String query, Pageable pageRequest);
+
+    void export(Consumer<Book> consumer);
 }
\ No newline at end of file
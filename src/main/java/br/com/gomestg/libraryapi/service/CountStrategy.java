@@ -0,0 +1,15 @@
+package br.com.gomestg.libraryapi.service;
+
+/**
+ * How the total of a paged search is worked out.
+ */
+public enum CountStrategy {
+    /** Counts every matching row. */
+    EXACT,
+    /** Exact count, reused for the same filter until it expires. */
+    CACHED,
+    /** Scales the table's row estimate by a sample of the rows; may be off either way. */
+    ESTIMATED,
+    /** No total at all: the result is a {@link org.springframework.data.domain.Slice}. */
+    NONE
+}
@@ -0,0 +1,21 @@
+package br.com.gomestg.libraryapi.service;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveBookService {
+    Mono<Book> save(Book book);
+
+    Mono<Book> getById(Long id);
+
+    Mono<Boolean> deleteById(Long id, Long version);
+
+    Mono<Boolean> updateById(Long id, Book changes, Long version);
+
+    Mono<Page<Book>> find(Book filter, Pageable pageRequest);
+
+    Flux<Book> stream(Book filter);
+}
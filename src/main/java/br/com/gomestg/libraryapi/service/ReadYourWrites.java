@@ -0,0 +1,26 @@
+package br.com.gomestg.libraryapi.service;
+
+/**
+ * Marks the current thread as serving a client that must see its own recent writes. Such reads
+ * go to the primary database, past every cache and shared in-flight read that may hold an older
+ * copy of a book.
+ */
+public final class ReadYourWrites {
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private ReadYourWrites() {
+    }
+
+    public static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    public static void unpin() {
+        PINNED.remove();
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+}
@@ -0,0 +1,17 @@
+package br.com.gomestg.libraryapi.service.feed;
+
+import br.com.gomestg.libraryapi.service.BookChangedEvent.Change;
+import lombok.Value;
+
+import java.time.Instant;
+
+/**
+ * One entry of the {@link BookChangeFeed}, numbered in the order the writes went through.
+ */
+@Value
+public class BookChange {
+    long sequence;
+    Long bookId;
+    Change change;
+    Instant time;
+}
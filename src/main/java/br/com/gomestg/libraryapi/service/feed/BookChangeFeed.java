@@ -0,0 +1,335 @@
+package br.com.gomestg.libraryapi.service.feed;
+
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The last {@code library.change-feed.capacity} book writes, held in a ring buffer and numbered
+ * by a sequence that only grows. A dispatcher thread hands each subscriber what it has not seen
+ * to a sender thread of its own, so a slow client holds up nobody else; one whose send takes
+ * longer than {@code library.change-feed.send-timeout} is dropped, and reconnects to resume. A
+ * subscriber resumes after the last sequence it saw, as long as that is still in the buffer;
+ * one that falls further behind is reset and has to reload what it mirrors.
+ * <p>
+ * Sequences start over with the process and differ between instances, so subscribers resume
+ * from an event id that also names the process it came from, {@code <epoch>-<sequence>}. One
+ * that resumes from another epoch, or from a sequence the feed has not reached, is reset as well.
+ */
+@Component
+@Profile("!reactive")
+public class BookChangeFeed implements SmartLifecycle {
+
+    /**
+     * Receives the changes of one subscription, from one sender thread at a time.
+     */
+    public interface Listener {
+
+        void onChanges(List<BookChange> changes) throws IOException;
+
+        /**
+         * The changes after the subscriber's sequence are gone, nothing else is sent.
+         *
+         * @param sequence the latest sequence, to resume from once the subscriber has reloaded;
+         *                 see {@link #eventId(long)}
+         */
+        void onReset(long sequence) throws IOException;
+
+        /**
+         * Nothing changed for a while; lets the listener find out whether its client is still there.
+         */
+        void onIdle() throws IOException;
+
+        /**
+         * The subscriber took longer than the send timeout to receive and is cancelled; called on
+         * another sender thread, while {@link #onChanges(List)} may still be blocked.
+         */
+        void onDropped();
+    }
+
+    private static final int MAX_BATCH = 500;
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final BookChange[] ring;
+    private long head;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+    private final LongAdder resets = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final long idleMillis;
+    private final long sendTimeoutNanos;
+    private final Executor senders;
+    private final Object signal = new Object();
+    private boolean signalled;
+    private volatile boolean running;
+    private Thread dispatcher;
+
+    @Autowired
+    public BookChangeFeed(@Value("${library.change-feed.capacity}") int capacity,
+                          @Value("${library.change-feed.idle-interval}") Duration idleInterval,
+                          @Value("${library.change-feed.send-timeout}") Duration sendTimeout,
+                          MeterRegistry registry) {
+        this(capacity, idleInterval, sendTimeout, registry, newSenders());
+    }
+
+    BookChangeFeed(int capacity, Duration idleInterval, Duration sendTimeout, MeterRegistry registry,
+                   Executor senders) {
+        this.ring = new BookChange[capacity];
+        this.idleMillis = idleInterval.toMillis();
+        this.sendTimeoutNanos = sendTimeout.toNanos();
+        this.senders = senders;
+        Gauge.builder("library.change-feed.sequence", this, BookChangeFeed::getSequence)
+                .description("Sequence of the latest book change")
+                .register(registry);
+        Gauge.builder("library.change-feed.subscribers", subscriptions, Set::size)
+                .description("Open change feed subscriptions")
+                .register(registry);
+        Gauge.builder("library.change-feed.lag", this, BookChangeFeed::getMaxLag)
+                .description("Changes the furthest behind subscriber has yet to receive")
+                .register(registry);
+        FunctionCounter.builder("library.change-feed.resets", resets, LongAdder::sum)
+                .description("Subscriptions dropped because the changes they needed were overwritten")
+                .register(registry);
+        FunctionCounter.builder("library.change-feed.drops", drops, LongAdder::sum)
+                .description("Subscriptions dropped because sending to them took longer than the send timeout")
+                .register(registry);
+    }
+
+    private static ExecutorService newSenders() {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "book-change-feed-send-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        synchronized (this) {
+            head++;
+            ring[(int) ((head - 1) % ring.length)] = new BookChange(head, event.getId(), event.getChange(), Instant.now());
+        }
+        wakeUp();
+    }
+
+    /**
+     * @param since last event id the subscriber has seen, or null to only receive changes from now on
+     */
+    public Subscription subscribe(String since, Listener listener) {
+        Subscription subscription = new Subscription(since == null ? getSequence() : sequence(since), listener);
+        subscriptions.add(subscription);
+        wakeUp();
+        return subscription;
+    }
+
+    public synchronized long getSequence() {
+        return head;
+    }
+
+    /**
+     * @return the id a subscriber resumes after {@code sequence} with
+     */
+    public String eventId(long sequence) {
+        return epoch + "-" + sequence;
+    }
+
+    /**
+     * @return the sequence of an event id of this process, or one past the latest sequence for
+     * anything else, so that it gets a reset
+     */
+    private long sequence(String eventId) {
+        int dash = eventId.indexOf('-');
+        if (dash >= 0 && eventId.substring(0, dash).equals(epoch)) {
+            try {
+                return Long.parseLong(eventId.substring(dash + 1));
+            } catch (NumberFormatException e) {
+                // not one of ours
+            }
+        }
+        return getSequence() + 1;
+    }
+
+    /**
+     * @return changes after {@code since}, oldest first, at most {@code max} of them; null when
+     * some of them have already been overwritten, or {@code since} is ahead of the feed
+     */
+    synchronized List<BookChange> after(long since, int max) {
+        long oldest = Math.max(1, head - ring.length + 1);
+        if (since > head || since + 1 < oldest) {
+            return null;
+        }
+        long to = Math.min(head, since + max);
+        List<BookChange> changes = new ArrayList<>((int) (to - since));
+        for (long sequence = since + 1; sequence <= to; sequence++) {
+            changes.add(ring[(int) ((sequence - 1) % ring.length)]);
+        }
+        return changes;
+    }
+
+    long getMaxLag() {
+        long sequence = getSequence();
+        long lag = 0;
+        for (Subscription subscription : subscriptions) {
+            lag = Math.max(lag, sequence - subscription.cursor);
+        }
+        return lag;
+    }
+
+    /**
+     * Has every subscriber sent what it has not seen yet, each on a sender thread, and drops
+     * those still busy with an earlier send for longer than the send timeout.
+     *
+     * @param idle whether to tell subscribers with nothing to receive that the feed is idle
+     */
+    void dispatch(boolean idle) {
+        long now = System.nanoTime();
+        long sequence = getSequence();
+        for (Subscription subscription : subscriptions) {
+            if (subscription.sending.get()) {
+                if (now - subscription.sendingSince > sendTimeoutNanos) {
+                    // its sender stays blocked until the connection gives up, the client resumes on reconnecting
+                    drops.increment();
+                    subscription.cancel();
+                    drop(subscription);
+                }
+            } else if (idle || subscription.cursor != sequence) {
+                subscription.sendingSince = now;
+                subscription.sending.set(true);
+                try {
+                    senders.execute(() -> send(subscription, idle));
+                } catch (RejectedExecutionException e) {
+                    // stopping
+                    subscription.sending.set(false);
+                }
+            }
+        }
+    }
+
+    private void drop(Subscription subscription) {
+        try {
+            senders.execute(subscription.listener::onDropped);
+        } catch (RejectedExecutionException e) {
+            // stopping
+        }
+    }
+
+    private void send(Subscription subscription, boolean idle) {
+        try {
+            boolean sent = false;
+            List<BookChange> changes;
+            while ((changes = after(subscription.cursor, MAX_BATCH)) != null && !changes.isEmpty()) {
+                subscription.listener.onChanges(changes);
+                subscription.cursor = changes.get(changes.size() - 1).getSequence();
+                sent = true;
+            }
+            if (changes == null) {
+                resets.increment();
+                subscription.cancel();
+                subscription.listener.onReset(getSequence());
+            } else if (idle && !sent) {
+                subscription.listener.onIdle();
+            }
+        } catch (IOException | RuntimeException e) {
+            // the client went away
+            subscription.cancel();
+        } finally {
+            subscription.sending.set(false);
+        }
+        // changes that came in while sending were skipped by the dispatcher
+        if (subscription.cursor != getSequence() && subscriptions.contains(subscription)) {
+            wakeUp();
+        }
+    }
+
+    private void wakeUp() {
+        synchronized (signal) {
+            signalled = true;
+            signal.notifyAll();
+        }
+    }
+
+    private void run() {
+        while (running) {
+            boolean idle;
+            synchronized (signal) {
+                try {
+                    if (!signalled) {
+                        signal.wait(idleMillis);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                idle = !signalled;
+                signalled = false;
+            }
+            dispatch(idle);
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        dispatcher = new Thread(this::run, "book-change-feed");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+        if (senders instanceof ExecutorService) {
+            ((ExecutorService) senders).shutdownNow();
+        }
+        subscriptions.forEach(Subscription::cancel);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * One subscriber's position in the feed.
+     */
+    public class Subscription {
+
+        private final Listener listener;
+        private volatile long cursor;
+        private final AtomicBoolean sending = new AtomicBoolean();
+        private volatile long sendingSince;
+
+        private Subscription(long cursor, Listener listener) {
+            this.cursor = cursor;
+            this.listener = listener;
+        }
+
+        public void cancel() {
+            subscriptions.remove(this);
+        }
+    }
+}
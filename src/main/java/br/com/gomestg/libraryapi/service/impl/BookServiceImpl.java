@@ -3,52 +3,337 @@ package br.com.gomestg.libraryapi.service.impl;
 import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
 import br.com.gomestg.libraryapi.model.entity.Book;
 import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import br.com.gomestg.libraryapi.model.shard.BookShards;
+import br.com.gomestg.libraryapi.model.shard.ShardedPages;
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
+import br.com.gomestg.libraryapi.service.BookChangedEvent.Change;
 import br.com.gomestg.libraryapi.service.BookService;
+import br.com.gomestg.libraryapi.service.CountStrategy;
+import br.com.gomestg.libraryapi.service.ReadYourWrites;
+import br.com.gomestg.libraryapi.service.SingleFlight;
+import br.com.gomestg.libraryapi.service.search.BookSearchIndex;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.ExampleMatcher;
 import org.springframework.data.domain.ExampleMatcher.StringMatcher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Optional;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 @Service
+@Profile("!reactive")
 public class BookServiceImpl implements BookService {
 
+    static final String BOOK_CACHE = "books";
+
+    static final Duration DEFAULT_COUNT_TTL = Duration.ofSeconds(30);
+
+    static final Duration DEFAULT_SINGLE_FLIGHT_WAIT = Duration.ofSeconds(1);
+
+    /**
+     * Keys bound to one {@code IN} query of a multi-get.
+     */
+    static final int LOOKUP_CHUNK_SIZE = 500;
+
+    /**
+     * Books read from each shard per query of a sharded export.
+     */
+    static final int EXPORT_CHUNK_SIZE = 1000;
+
+    /**
+     * What a sharded page query reads, so that it returns whole books like the unsharded one.
+     */
+    static final Set<String> ALL_FIELDS =
+            Collections.unmodifiableSet(new HashSet<>(Arrays.asList("id", "title", "author", "isbn", "version")));
+
     private BookRepository repository;
+    private BookSearchIndex searchIndex;
+    private Cache<List<Object>, Long> counts;
+    private ApplicationEventPublisher events;
+    private SingleFlight<Long, Optional<Book>> byId;
+    private SingleFlight<List<Object>, Page<Book>> pages;
+    private SingleFlight<List<Object>, Slice<Book>> projections;
+    private BookShards shards;
+    private org.springframework.cache.Cache books;
+    private boolean replicas;
+    private final AtomicLong invalidations = new AtomicLong();
 
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex) {
+        this(repository, searchIndex, DEFAULT_COUNT_TTL, DEFAULT_SINGLE_FLIGHT_WAIT, event -> { }, BookShards.single(), null, false);
+    }
+
+    @Autowired
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex,
+                           @Value("${library.count-cache.ttl}") Duration countTtl,
+                           @Value("${library.single-flight.max-wait}") Duration singleFlightWait,
+                           ApplicationEventPublisher events, ObjectProvider<BookShards> shards,
+                           ObjectProvider<CacheManager> cacheManager,
+                           @Value("${library.replicas.enabled:false}") boolean replicas) {
+        this(repository, searchIndex, countTtl, singleFlightWait, events, shards.getIfAvailable(BookShards::single),
+                cacheManager.getIfAvailable() == null ? null : cacheManager.getIfAvailable().getCache(BOOK_CACHE),
+                replicas);
+    }
+
+    /**
+     * @param countTtl         how long a {@link CountStrategy#CACHED} total is reused for the same filter;
+     *                         writes don't invalidate it, so totals may lag behind by up to this long
+     * @param singleFlightWait how long concurrent identical reads wait for the one already running
+     *                         before querying on their own; zero runs every read on its own
+     * @param shards           where each book's queries go, and which pages are gathered from
+     * @param books            the cache {@link #getById} reads through and writes evict, null for none
+     * @param replicas         whether reads not pinned by {@link ReadYourWrites} go to replicas; what
+     *                         they return may lag behind the primary and is not cached
+     */
+    public BookServiceImpl(BookRepository repository, BookSearchIndex searchIndex, Duration countTtl,
+                           Duration singleFlightWait, ApplicationEventPublisher events, BookShards shards,
+                           org.springframework.cache.Cache books, boolean replicas) {
         this.repository = repository;
+        this.shards = shards;
+        this.books = books;
+        this.replicas = replicas;
+        this.searchIndex = searchIndex;
+        this.events = events;
+        this.byId = new SingleFlight<>(singleFlightWait);
+        this.pages = new SingleFlight<>(singleFlightWait);
+        this.projections = new SingleFlight<>(singleFlightWait);
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(10_000)
+                .expireAfterWrite(countTtl)
+                .build();
     }
 
     @Override
+    @CachePut(cacheNames = BOOK_CACHE, key = "#result.id")
     public Book save(Book book) {
-        if(repository.existsByIsbn(book.getIsbn())){
+        Book saved;
+        int shard = shards.forIsbn(book.getIsbn());
+        try {
+            saved = shards.on(shard, () -> repository.saveAndFlush(shards.assignId(shard, book)));
+        } catch (DataIntegrityViolationException e) {
             throw new LibraryBusinessException("Isbn already registered");
         }
-        return repository.save(book);
+        searchIndex.index(saved);
+        changed(saved.getId(), Change.CREATED);
+        return saved;
+    }
+
+    @Override
+    public List<Book> saveAll(List<Book> books) {
+        Map<Integer, List<Book>> byShard = new TreeMap<>();
+        books.forEach(book -> byShard.computeIfAbsent(shards.forIsbn(book.getIsbn()), shard -> new ArrayList<>()).add(book));
+        List<Book> saved = new ArrayList<>(books.size());
+        List<Integer> involved = new ArrayList<>(byShard.keySet());
+        shards.onEach(involved, shard -> saveAll(shard, byShard.get(shard))).forEach(saved::addAll);
+        for (Book book : saved) {
+            searchIndex.index(book);
+            changed(book.getId(), Change.CREATED);
+        }
+        return saved;
+    }
+
+    private List<Book> saveAll(int shard, List<Book> books) {
+        Set<String> isbns = new HashSet<>();
+        books.forEach(book -> isbns.add(book.getIsbn()));
+        Set<String> registered = isbns.isEmpty() ? Collections.emptySet() : repository.findRegisteredIsbns(isbns);
+
+        Set<String> accepted = new HashSet<>();
+        List<Book> newBooks = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (!registered.contains(book.getIsbn()) && accepted.add(book.getIsbn())) {
+                newBooks.add(shards.assignId(shard, book));
+            }
+        }
+        List<Book> saved;
+        try {
+            saved = repository.saveAllAndFlush(newBooks);
+        } catch (DataIntegrityViolationException e) {
+            // an ISBN was registered concurrently: retry one by one so the rest of the chunk survives
+            saved = new ArrayList<>(newBooks.size());
+            for (Book book : newBooks) {
+                book.setId(null);
+                try {
+                    saved.add(repository.saveAndFlush(shards.assignId(shard, book)));
+                } catch (DataIntegrityViolationException duplicated) {
+                    // reported by the caller as not saved
+                }
+            }
+        }
+        return saved;
     }
 
     @Override
     public Optional<Book> getById(Long id) {
-        return this.repository.findById(id);
+        if (books == null) {
+            return findById(id);
+        }
+        boolean pinned = ReadYourWrites.isPinned();
+        if (!pinned) {
+            org.springframework.cache.Cache.ValueWrapper cached = books.get(id);
+            if (cached != null) {
+                return Optional.of((Book) cached.get());
+            }
+        }
+        if (replicas && !pinned) {
+            // from a replica, which may not have the latest write yet
+            return findById(id);
+        }
+        long stamp = invalidations.get();
+        Optional<Book> book = findById(id);
+        book.ifPresent(found -> cache(found, stamp));
+        return book;
+    }
+
+    private Optional<Book> findById(Long id) {
+        return shared(byId, id, () -> shards.on(shards.forId(id), () -> this.repository.findById(id)));
+    }
+
+    /**
+     * Caches a book read before {@code stamp} was taken, unless a book was written since: the
+     * read may have raced that write, whose eviction would then not cover it.
+     */
+    private void cache(Book book, long stamp) {
+        if (invalidations.get() == stamp) {
+            books.put(book.getId(), book);
+            // a write that raced the put above must not leave its entry behind
+            if (invalidations.get() != stamp) {
+                books.evict(book.getId());
+            }
+        }
+    }
+
+    /**
+     * Joins an identical read already in flight, unless the thread must see its own writes: the
+     * read it would join may have started before them, or on a replica.
+     */
+    private static <K, V> V shared(SingleFlight<K, V> flights, K key, Supplier<V> read) {
+        return ReadYourWrites.isPinned() ? read.get() : flights.execute(key, read);
+    }
+
+    @Override
+    public Optional<Book> getByIsbn(String isbn) {
+        return shards.on(shards.forIsbn(isbn), () -> this.repository.findByIsbn(isbn));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<Optional<Book>> getAllById(List<Long> ids) {
+        return lookup(ids, shards::forId, repository::findAllById, Book::getId);
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public List<Optional<Book>> getAllByIsbn(List<String> isbns) {
+        return lookup(isbns, shards::forIsbn, repository::findByIsbnIn, Book::getIsbn);
+    }
+
+    /**
+     * Queries each distinct key once, on its shard, in chunks of {@link #LOOKUP_CHUNK_SIZE}, and
+     * lines the books found back up with the keys as requested.
+     */
+    private <K> List<Optional<Book>> lookup(List<K> keys, ToIntFunction<K> shard,
+                                            Function<List<K>, List<Book>> query, Function<Book, K> key) {
+        Map<Integer, List<K>> byShard = new TreeMap<>();
+        for (K distinct : new LinkedHashSet<>(keys)) {
+            if (distinct != null) {
+                byShard.computeIfAbsent(shard.applyAsInt(distinct), s -> new ArrayList<>()).add(distinct);
+            }
+        }
+        Map<K, Book> found = new HashMap<>();
+        shards.onEach(new ArrayList<>(byShard.keySet()), s -> {
+            List<K> onShard = byShard.get(s);
+            List<Book> books = new ArrayList<>();
+            for (int from = 0; from < onShard.size(); from += LOOKUP_CHUNK_SIZE) {
+                books.addAll(query.apply(onShard.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, onShard.size()))));
+            }
+            return books;
+        }).forEach(books -> books.forEach(book -> found.put(key.apply(book), book)));
+        List<Optional<Book>> result = new ArrayList<>(keys.size());
+        keys.forEach(requested -> result.add(Optional.ofNullable(found.get(requested))));
+        return result;
+    }
+
+    @Override
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#book.id")
     public void delete(Book book) {
         if (book.getId() == null || book == null){
             throw new IllegalArgumentException("Book ID can't be null");
         }
-        this.repository.delete(book);
+        shards.on(shards.forId(book.getId()), () -> {
+            this.repository.delete(book);
+            return null;
+        });
+        searchIndex.remove(book.getId());
+        changed(book.getId(), Change.DELETED);
+    }
+
+    @Override
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public boolean deleteById(Long id, Long version) {
+        if (shards.on(shards.forId(id), () -> repository.deleteByIdAndVersion(id, version)) == 0) {
+            return false;
+        }
+        searchIndex.remove(id);
+        changed(id, Change.DELETED);
+        return true;
     }
 
     @Override
+    @CachePut(cacheNames = BOOK_CACHE, key = "#result.id")
     public Book update(Book book) {
         if (book.getId() == null || book == null){
             throw new IllegalArgumentException("Book ID can't be null");
         }
-        return this.repository.save(book);
+        Book updated = shards.on(shards.forId(book.getId()), () -> this.repository.save(book));
+        searchIndex.index(updated);
+        changed(updated.getId(), Change.UPDATED);
+        return updated;
+    }
+
+    @Override
+    @CacheEvict(cacheNames = BOOK_CACHE, key = "#id")
+    public boolean updateById(Long id, Book changes, Long version) {
+        if (shards.on(shards.forId(id), () -> repository.updateTitleAndAuthor(id, changes.getTitle(), changes.getAuthor(), version)) == 0) {
+            return false;
+        }
+        searchIndex.index(Book.builder().id(id).title(changes.getTitle()).author(changes.getAuthor()).build());
+        changed(id, Change.UPDATED);
+        return true;
+    }
+
+    /**
+     * Runs after every write has gone through, so that reads from then on start afresh rather
+     * than join one that may have read before it, and such a read is not cached.
+     */
+    private void changed(Long id, Change change) {
+        invalidations.incrementAndGet();
+        byId.forget(id);
+        pages.forgetAll();
+        projections.forgetAll();
+        events.publishEvent(new BookChangedEvent(id, change));
     }
 
     @Override
@@ -60,6 +345,185 @@ public class BookServiceImpl implements BookService {
                         .withIgnoreNullValues()
                         .withStringMatcher( StringMatcher.CONTAINING)
         );
-        return repository.findAll(example, pageRequest);
+        List<Object> key = Arrays.asList(filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+                pageRequest);
+        if (shards.isSharded()) {
+            // not through the query cache, which would hand every shard the first one's rows
+            return shared(pages, key, () -> (Page<Book>) findSharded(filter, ALL_FIELDS, pageRequest, CountStrategy.EXACT));
+        }
+        return shared(pages, key, () -> repository.findAll(example, pageRequest));
+    }
+
+    /**
+     * Identical concurrent calls share one query. Each runs in its own read-only transaction in
+     * the repository, so callers waiting on another's query hold no connection meanwhile.
+     */
+    @Override
+    public Slice<Book> find(Book filter, Set<String> fields, Pageable pageRequest, CountStrategy count) {
+        List<Object> key = Arrays.asList(filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn(),
+                new HashSet<>(fields), pageRequest, count);
+        if (shards.isSharded()) {
+            return shared(projections, key, () -> findSharded(filter, fields, pageRequest, count));
+        }
+        return shared(projections, key, () -> findProjected(filter, fields, pageRequest, count));
+    }
+
+    /**
+     * Asks every shard, in parallel, for its rows up to the end of the page and merges them in
+     * page order; the total is the sum of the shards' totals, counted as {@code count} says.
+     * Deep pages cost every shard the rows before them, where {@link #findAfter} does not.
+     */
+    private Slice<Book> findSharded(Book filter, Set<String> fields, Pageable pageRequest, CountStrategy count) {
+        Set<String> read = new HashSet<>(fields);
+        pageRequest.getSort().forEach(order -> read.add(order.getProperty()));
+        read.add("id");
+        Pageable upToPage = pageRequest.isPaged()
+                ? PageRequest.of(0, (int) Math.min(pageRequest.getOffset() + pageRequest.getPageSize(), Integer.MAX_VALUE),
+                        pageRequest.getSort())
+                : pageRequest;
+        List<Slice<Book>> slices = shards.onAll(shard -> findProjected(shard, filter, read, upToPage, count));
+
+        List<List<Book>> sorted = new ArrayList<>(slices.size());
+        slices.forEach(slice -> sorted.add(slice.getContent()));
+        List<Book> content = ShardedPages.merge(sorted, ShardedPages.comparator(pageRequest.getSort()),
+                pageRequest.isPaged() ? pageRequest.getOffset() : 0,
+                pageRequest.isPaged() ? pageRequest.getPageSize() : Integer.MAX_VALUE);
+        if (!read.equals(fields)) {
+            content.replaceAll(book -> ShardedPages.only(book, fields));
+        }
+        if (count == CountStrategy.NONE) {
+            boolean hasNext = slices.stream().anyMatch(Slice::hasNext)
+                    || sorted.stream().mapToLong(List::size).sum() > upToPage.getPageSize();
+            return new SliceImpl<>(content, pageRequest, pageRequest.isPaged() && hasNext);
+        }
+        long total = 0;
+        for (Slice<Book> slice : slices) {
+            total += ((Page<Book>) slice).getTotalElements();
+        }
+        return new PageImpl<>(content, pageRequest, total);
+    }
+
+    private Slice<Book> findProjected(int shard, Book filter, Set<String> fields, Pageable pageRequest, CountStrategy count) {
+        if (count == CountStrategy.CACHED) {
+            List<Object> key = Arrays.asList(shard, filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn());
+            return repository.findProjected(filter, fields, pageRequest,
+                    () -> counts.get(key, k -> repository.countMatching(filter)));
+        }
+        return findProjected(filter, fields, pageRequest, count);
+    }
+
+    private Slice<Book> findProjected(Book filter, Set<String> fields, Pageable pageRequest, CountStrategy count) {
+        switch (count) {
+            case CACHED:
+                List<Object> key = Arrays.asList(filter.getId(), filter.getTitle(), filter.getAuthor(), filter.getIsbn());
+                return repository.findProjected(filter, fields, pageRequest,
+                        () -> counts.get(key, k -> repository.countMatching(filter)));
+            case ESTIMATED:
+                return repository.findProjected(filter, fields, pageRequest, () -> repository.estimateCount(filter));
+            case NONE:
+                return repository.findProjectedSlice(filter, fields, pageRequest);
+            default:
+                return repository.findProjected(filter, fields, pageRequest);
+        }
+    }
+
+    @Override
+    public Slice<Book> findAfter(Book filter, Long after, int size) {
+        if (shards.isSharded()) {
+            List<Slice<Book>> slices = shards.onAll(shard -> findAfter(filter, after == null ? 0L : after, size));
+            List<List<Book>> sorted = new ArrayList<>(slices.size());
+            slices.forEach(slice -> sorted.add(slice.getContent()));
+            List<Book> content = ShardedPages.merge(sorted, Comparator.comparing(Book::getId), 0, size);
+            boolean hasNext = slices.stream().anyMatch(Slice::hasNext) || sorted.stream().mapToInt(List::size).sum() > size;
+            return new SliceImpl<>(content, PageRequest.of(0, size), hasNext);
+        }
+        return findAfter(filter, after == null ? 0L : after, size);
+    }
+
+    private Slice<Book> findAfter(Book filter, long after, int size) {
+        return repository.findAfter(after,
+                filter.getTitle(),
+                filter.getAuthor(),
+                filter.getIsbn(),
+                PageRequest.of(0, size));
+    }
+
+    @Override
+    public Page<Book> search(String query, Pageable pageRequest) {
+        List<Long> ids = searchIndex.search(query);
+        int from = (int) Math.min(pageRequest.getOffset(), ids.size());
+        int to = Math.min(from + pageRequest.getPageSize(), ids.size());
+        List<Book> content = new ArrayList<>(to - from);
+        getAllById(ids.subList(from, to)).forEach(book -> book.ifPresent(content::add));
+        return new PageImpl<>(content, pageRequest, ids.size());
+    }
+
+    /**
+     * When sharded, books are read in chunks from every shard at once and handed over in id
+     * order across all of them.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void export(Consumer<Book> consumer) {
+        if (shards.isSharded()) {
+            exportSharded(consumer);
+            return;
+        }
+        try (Stream<Book> books = repository.streamAll()) {
+            books.forEach(consumer);
+        }
+    }
+
+    private void exportSharded(Consumer<Book> consumer) {
+        int count = shards.count();
+        List<Deque<Book>> buffers = new ArrayList<>(count);
+        long[] after = new long[count];
+        boolean[] more = new boolean[count];
+        for (int shard = 0; shard < count; shard++) {
+            buffers.add(new ArrayDeque<>());
+            more[shard] = true;
+        }
+        while (true) {
+            List<Integer> drained = new ArrayList<>();
+            for (int shard = 0; shard < count; shard++) {
+                if (more[shard] && buffers.get(shard).isEmpty()) {
+                    drained.add(shard);
+                }
+            }
+            if (drained.isEmpty() && buffers.stream().allMatch(Deque::isEmpty)) {
+                return;
+            }
+            List<Slice<Book>> chunks = shards.onEach(drained,
+                    shard -> findAfter(Book.builder().build(), after[shard], EXPORT_CHUNK_SIZE));
+            for (int i = 0; i < drained.size(); i++) {
+                int shard = drained.get(i);
+                List<Book> chunk = chunks.get(i).getContent();
+                buffers.get(shard).addAll(chunk);
+                more[shard] = chunks.get(i).hasNext();
+                if (!chunk.isEmpty()) {
+                    after[shard] = chunk.get(chunk.size() - 1).getId();
+                }
+            }
+            // lowest id first, until a shard that may have lower ones left needs its next chunk
+            Integer next;
+            while ((next = lowestId(buffers, more)) != null) {
+                consumer.accept(buffers.get(next).poll());
+            }
+        }
+    }
+
+    private static Integer lowestId(List<Deque<Book>> buffers, boolean[] more) {
+        Integer lowest = null;
+        for (int shard = 0; shard < buffers.size(); shard++) {
+            Book head = buffers.get(shard).peek();
+            if (head == null) {
+                if (more[shard]) {
+                    return null;
+                }
+            } else if (lowest == null || head.getId() < buffers.get(lowest).peek().getId()) {
+                lowest = shard;
+            }
+        }
+        return lowest;
     }
 }
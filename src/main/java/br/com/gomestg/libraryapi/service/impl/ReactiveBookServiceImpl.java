@@ -0,0 +1,80 @@
+package br.com.gomestg.libraryapi.service.impl;
+
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.repository.ReactiveBookRepository;
+import br.com.gomestg.libraryapi.service.ReactiveBookService;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.function.Function;
+
+@Service
+@Profile("reactive")
+public class ReactiveBookServiceImpl implements ReactiveBookService {
+
+    static final int STREAM_CHUNK_SIZE = 1000;
+
+    private ReactiveBookRepository repository;
+
+    public ReactiveBookServiceImpl(ReactiveBookRepository repository) {
+        this.repository = repository;
+    }
+
+    @Override
+    public Mono<Book> save(Book book) {
+        return repository.insert(book)
+                .onErrorMap(DataIntegrityViolationException.class, e -> new LibraryBusinessException("Isbn already registered"));
+    }
+
+    @Override
+    public Mono<Book> getById(Long id) {
+        return repository.findById(id);
+    }
+
+    @Override
+    public Mono<Boolean> deleteById(Long id, Long version) {
+        return repository.deleteByIdAndVersion(id, version).map(deleted -> deleted > 0);
+    }
+
+    @Override
+    public Mono<Boolean> updateById(Long id, Book changes, Long version) {
+        return repository.updateTitleAndAuthor(id, changes.getTitle(), changes.getAuthor(), version)
+                .map(updated -> updated > 0);
+    }
+
+    /**
+     * Like {@code PageableExecutionUtils}, skips the count query when the page itself tells the total.
+     */
+    @Override
+    public Mono<Page<Book>> find(Book filter, Pageable pageRequest) {
+        return repository.find(filter, pageRequest).collectList().flatMap(content -> {
+            if (pageRequest.isUnpaged() || content.size() < pageRequest.getPageSize()
+                    && (pageRequest.getOffset() == 0 || !content.isEmpty())) {
+                long total = pageRequest.isUnpaged() ? content.size() : pageRequest.getOffset() + content.size();
+                return Mono.just(new PageImpl<>(content, pageRequest, total));
+            }
+            return repository.count(filter).map(total -> new PageImpl<>(content, pageRequest, total));
+        });
+    }
+
+    /**
+     * Every book matching {@code filter}, in id order. Rows are read in keyset chunks and
+     * demand drives the reads: at most one chunk is buffered ahead of the subscriber.
+     */
+    @Override
+    public Flux<Book> stream(Book filter) {
+        return repository.findAfter(filter, 0L, STREAM_CHUNK_SIZE).collectList()
+                .expand(chunk -> chunk.size() < STREAM_CHUNK_SIZE
+                        ? Mono.empty()
+                        : repository.findAfter(filter, chunk.get(chunk.size() - 1).getId(), STREAM_CHUNK_SIZE).collectList())
+                .flatMapIterable(Function.<List<Book>>identity(), 1);
+    }
+}
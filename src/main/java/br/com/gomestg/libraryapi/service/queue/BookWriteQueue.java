@@ -0,0 +1,235 @@
+package br.com.gomestg.libraryapi.service.queue;
+
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.BookService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opt-in ({@code library.write-behind.enabled=true}) write-behind of book creates: books are
+ * accepted into a bounded in-memory queue and a single writer thread saves them in batches
+ * through {@link BookService#saveAll}. Each accepted book gets a {@link Ticket} to poll.
+ * <p>
+ * An idempotency key maps retries of the same create to its first ticket for
+ * {@code library.write-behind.retention}. Accepted books that are still queued are lost if
+ * the process dies; a graceful shutdown writes them first.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "library.write-behind.enabled", havingValue = "true")
+public class BookWriteQueue implements SmartLifecycle {
+
+    public enum Status {
+        PENDING, CREATED, FAILED
+    }
+
+    private final BookService service;
+    private final BlockingQueue<Ticket> queue;
+    private final int batchSize;
+    private final Cache<String, Ticket> tickets;
+    private final Cache<String, Ticket> idempotencyKeys;
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running;
+    private Thread writer;
+
+    public BookWriteQueue(BookService service,
+                          @Value("${library.write-behind.capacity}") int capacity,
+                          @Value("${library.write-behind.batch-size}") int batchSize,
+                          @Value("${library.write-behind.retention}") Duration retention,
+                          MeterRegistry registry) {
+        this.service = service;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.tickets = Caffeine.newBuilder().expireAfterWrite(retention).build();
+        this.idempotencyKeys = Caffeine.newBuilder().expireAfterWrite(retention).build();
+        Gauge.builder("library.write-behind.queued", queue, Collection::size)
+                .description("Books accepted but not yet written")
+                .register(registry);
+        FunctionCounter.builder("library.write-behind.rejected", rejected, LongAdder::sum)
+                .description("Creates turned away because the queue was full")
+                .register(registry);
+    }
+
+    /**
+     * Queues a create, or finds the ticket of an earlier one with the same idempotency key.
+     *
+     * @return the ticket, or empty when the queue is full and the book was not accepted
+     * @throws LibraryBusinessException when the key was already used for a different book
+     */
+    public Optional<Ticket> submit(Book book, String idempotencyKey) {
+        Ticket ticket = new Ticket(UUID.randomUUID().toString(), book);
+        if (idempotencyKey != null) {
+            Ticket first = idempotencyKeys.asMap().putIfAbsent(idempotencyKey, ticket);
+            if (first != null) {
+                if (!sameBook(first.book, book)) {
+                    throw new LibraryBusinessException("Idempotency-Key already used for another book");
+                }
+                return Optional.of(first);
+            }
+        }
+        tickets.put(ticket.id, ticket);
+        if (!queue.offer(ticket)) {
+            tickets.invalidate(ticket.id);
+            if (idempotencyKey != null) {
+                idempotencyKeys.asMap().remove(idempotencyKey, ticket);
+            }
+            rejected.increment();
+            return Optional.empty();
+        }
+        return Optional.of(ticket);
+    }
+
+    public Optional<Ticket> find(String ticketId) {
+        return Optional.ofNullable(tickets.getIfPresent(ticketId));
+    }
+
+    /**
+     * Saves up to one batch of queued books, waiting up to {@code timeout} for the first.
+     *
+     * @return how many books were taken off the queue
+     */
+    int writePending(long timeout, TimeUnit unit) throws InterruptedException {
+        Ticket first = queue.poll(timeout, unit);
+        if (first == null) {
+            return 0;
+        }
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        batch.add(first);
+        queue.drainTo(batch, batchSize - 1);
+
+        List<Book> books = new ArrayList<>(batch.size());
+        batch.forEach(ticket -> books.add(ticket.book));
+        Map<String, Long> saved = new HashMap<>();
+        try {
+            service.saveAll(books).forEach(book -> saved.put(book.getIsbn(), book.getId()));
+        } catch (RuntimeException e) {
+            batch.forEach(ticket -> ticket.fail("Could not be saved: " + e.getMessage()));
+            return batch.size();
+        }
+        for (Ticket ticket : batch) {
+            Long id = saved.remove(ticket.book.getIsbn());
+            if (id != null) {
+                ticket.created(id);
+            } else {
+                ticket.fail("Isbn already registered");
+            }
+        }
+        return batch.size();
+    }
+
+    private void run() {
+        while (running || !queue.isEmpty()) {
+            try {
+                writePending(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static boolean sameBook(Book first, Book retry) {
+        return Objects.equals(first.getIsbn(), retry.getIsbn())
+                && Objects.equals(first.getTitle(), retry.getTitle())
+                && Objects.equals(first.getAuthor(), retry.getAuthor());
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        writer = new Thread(this::run, "book-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Returns once the writer has saved every queued book.
+     */
+    @Override
+    public void stop() {
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Stops after the web server, so that no create is accepted once the writer is gone.
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    /**
+     * Progress of one accepted create.
+     */
+    public static class Ticket {
+
+        private final String id;
+        private final Book book;
+        private volatile Status status = Status.PENDING;
+        private volatile Long bookId;
+        private volatile String error;
+
+        Ticket(String id, Book book) {
+            this.id = id;
+            this.book = book;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return the id of the created book, once {@link Status#CREATED}
+         */
+        public Long getBookId() {
+            return bookId;
+        }
+
+        /**
+         * @return why the book was not created, once {@link Status#FAILED}
+         */
+        public String getError() {
+            return error;
+        }
+
+        private void created(Long bookId) {
+            this.bookId = bookId;
+            this.status = Status.CREATED;
+        }
+
+        private void fail(String error) {
+            this.error = error;
+            this.status = Status.FAILED;
+        }
+    }
+}
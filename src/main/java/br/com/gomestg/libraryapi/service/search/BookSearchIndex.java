@@ -0,0 +1,143 @@
+package br.com.gomestg.libraryapi.service.search;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import br.com.gomestg.libraryapi.model.shard.BookShards;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * In-memory inverted index over {@link Book#getTitle()} and {@link Book#getAuthor()}.
+ * <p>
+ * Words are accent-folded and lower-cased; a query term matches every indexed word it
+ * is a prefix of. All terms must match, and results are ranked by field (title over
+ * author) and by exact over prefix matches.
+ */
+@Component
+@Profile("!reactive")
+public class BookSearchIndex {
+
+    private static final int TITLE = 1;
+    private static final int AUTHOR = 2;
+    private static final int REBUILD_CHUNK_SIZE = 1000;
+
+    private final BookRepository repository;
+    private final BookShards shards;
+    // word -> book id -> fields containing the word
+    private final ConcurrentSkipListMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+    private final Map<Long, Set<String>> documents = new ConcurrentHashMap<>();
+
+    public BookSearchIndex(BookRepository repository) {
+        this(repository, BookShards.single());
+    }
+
+    @Autowired
+    public BookSearchIndex(BookRepository repository, ObjectProvider<BookShards> shards) {
+        this(repository, shards.getIfAvailable(BookShards::single));
+    }
+
+    public BookSearchIndex(BookRepository repository, BookShards shards) {
+        this.repository = repository;
+        this.shards = shards;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        shards.onAll(shard -> {
+            Long after = 0L;
+            Slice<Book> chunk;
+            do {
+                chunk = repository.findAfter(after, null, null, null, PageRequest.of(0, REBUILD_CHUNK_SIZE));
+                for (Book book : chunk) {
+                    index(book);
+                    after = book.getId();
+                }
+            } while (chunk.hasNext());
+            return null;
+        });
+    }
+
+    public synchronized void index(Book book) {
+        remove(book.getId());
+        Map<String, Integer> words = new HashMap<>();
+        tokenize(book.getTitle()).forEach(word -> words.merge(word, TITLE, (a, b) -> a | b));
+        tokenize(book.getAuthor()).forEach(word -> words.merge(word, AUTHOR, (a, b) -> a | b));
+        words.forEach((word, fields) -> postings.computeIfAbsent(word, w -> new ConcurrentHashMap<>()).put(book.getId(), fields));
+        documents.put(book.getId(), words.keySet());
+    }
+
+    public synchronized void remove(Long id) {
+        Set<String> words = documents.remove(id);
+        if (words == null) {
+            return;
+        }
+        for (String word : words) {
+            postings.computeIfPresent(word, (w, ids) -> {
+                ids.remove(id);
+                return ids.isEmpty() ? null : ids;
+            });
+        }
+    }
+
+    /**
+     * @return ids of the books matching every term of the query, best match first
+     */
+    public List<Long> search(String query) {
+        Map<Long, Integer> scores = null;
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            Map<Long, Integer> termScores = new HashMap<>();
+            postings.subMap(term, true, term + Character.MAX_VALUE, true).forEach((word, ids) -> {
+                int boost = word.equals(term) ? 2 : 1;
+                ids.forEach((id, fields) -> termScores.merge(id, boost * weight(fields), Math::max));
+            });
+            if (scores == null) {
+                scores = termScores;
+            } else {
+                scores.keySet().retainAll(termScores.keySet());
+                scores.replaceAll((id, score) -> score + termScores.get(id));
+            }
+            if (scores.isEmpty()) {
+                break;
+            }
+        }
+        if (scores == null) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Long> ids = new ArrayList<>(ranked.size());
+        ranked.forEach(entry -> ids.add(entry.getKey()));
+        return ids;
+    }
+
+    private static int weight(int fields) {
+        return ((fields & TITLE) != 0 ? 2 : 0) + ((fields & AUTHOR) != 0 ? 1 : 0);
+    }
+
+    static List<String> tokenize(String text) {
+        if (text == null || text.isEmpty()) {
+            return Collections.emptyList();
+        }
+        String folded = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}+", "")
+                .toLowerCase(Locale.ROOT);
+        List<String> words = new ArrayList<>();
+        for (String word : folded.split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
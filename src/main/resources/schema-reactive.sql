@@ -0,0 +1,12 @@
+-- Same table and sequence Hibernate generates for the servlet stack
+create sequence if not exists book_seq start with 1 increment by 50;
+
+create table if not exists book (
+    id bigint not null primary key,
+    title varchar(255),
+    author varchar(255),
+    isbn varchar(255),
+    version bigint
+);
+
+create unique index if not exists ux_book_isbn on book (isbn);
@@ -0,0 +1,91 @@
+package br.com.gomestg.libraryapi.api.mapper;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+public class BookMapperTest {
+
+    BookMapper mapper = new BookMapper();
+
+    @Test
+    @DisplayName("map a dto to entity")
+    public void toEntityTest() {
+        BookDTO dto = BookDTO.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+
+        Book book = mapper.toEntity(dto);
+
+        assertThat(book.getId()).isEqualTo(10l);
+        assertThat(book.getTitle()).isEqualTo(dto.getTitle());
+        assertThat(book.getAuthor()).isEqualTo(dto.getAuthor());
+        assertThat(book.getIsbn()).isEqualTo(dto.getIsbn());
+    }
+
+    @Test
+    @DisplayName("map an entity to dto")
+    public void toDtoTest() {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+
+        BookDTO dto = mapper.toDto(book);
+
+        assertThat(dto.getId()).isEqualTo(10l);
+        assertThat(dto.getTitle()).isEqualTo(book.getTitle());
+        assertThat(dto.getAuthor()).isEqualTo(book.getAuthor());
+        assertThat(dto.getIsbn()).isEqualTo(book.getIsbn());
+    }
+
+    @Test
+    @DisplayName("map an entity list to dto list keeping order")
+    public void toDtoListTest() {
+        Book first = Book.builder().id(1l).isbn("U1").build();
+        Book second = Book.builder().id(2l).isbn("U2").build();
+
+        List<BookDTO> list = mapper.toDtoList(Arrays.asList(first, second));
+
+        assertThat(list).extracting(BookDTO::getId).containsExactly(1l, 2l);
+    }
+
+    @Test
+    @DisplayName("map an entity to a sparse map in field order")
+    public void toMapTest() {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+
+        Map<String, Object> map = mapper.toMap(book, new HashSet<>(Arrays.asList("isbn", "id")));
+
+        assertThat(map).containsExactly(
+                entry("id", 10l),
+                entry("isbn", "U1234"));
+    }
+
+    @Test
+    @DisplayName("time page mappings per operation")
+    public void mappingTimerTest() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        BookMapper timedMapper = new BookMapper(registry);
+        List<Book> books = Arrays.asList(Book.builder().id(1l).build(), Book.builder().id(2l).build());
+
+        timedMapper.toDtoList(books);
+        timedMapper.toDtoList(books);
+        timedMapper.toMapList(books, BookMapper.FIELDS);
+
+        assertThat(registry.get("library.book.mapping").tag("operation", "toDtoList").timer().count()).isEqualTo(2);
+        assertThat(registry.get("library.book.mapping").tag("operation", "toMapList").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("map null values")
+    public void nullTest() {
+        assertThat(mapper.toEntity(null)).isNull();
+        assertThat(mapper.toDto(null)).isNull();
+    }
+}
@@ -0,0 +1,106 @@
+package br.com.gomestg.libraryapi.api.resource;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
+import br.com.gomestg.libraryapi.service.BookService;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@WebMvcTest(properties = "library.response-cache.enabled=true")
+@AutoConfigureMockMvc
+public class BookControllerResponseCacheTest {
+
+    static String URL = "/api/books/";
+
+    @Autowired
+    MockMvc mock;
+
+    @Autowired
+    ApplicationEventPublisher events;
+
+    @MockBean
+    BookService service;
+
+    @Test
+    @DisplayName("find a book details from cached bytes : successfully")
+    public void getCachedBookDetailsTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(3l).build();
+        BDDMockito.given(service.getById(10l)).willReturn(Optional.of(book));
+
+        for (int i = 0; i < 2; i++) {
+            mock.perform(MockMvcRequestBuilders.get(URL.concat("10")).accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().string("ETag", "\"3\""))
+                    .andExpect(jsonPath("title").value("Cassino Royale"));
+        }
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("10")).header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified());
+
+        Mockito.verify(service, Mockito.times(1)).getById(10l);
+    }
+
+    @Test
+    @DisplayName("find a book details as cbor from cached bytes : successfully")
+    public void getCachedBookDetailsCborTest() throws Exception {
+        Book book = Book.builder().id(11l).title("Dr. No").author("Ian Fleming").isbn("U11").version(1l).build();
+        BDDMockito.given(service.getById(11l)).willReturn(Optional.of(book));
+
+        byte[] body = mock.perform(MockMvcRequestBuilders.get(URL.concat("11")).accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertThat(new CBORMapper().readTree(body).get("title").asText()).isEqualTo("Dr. No");
+    }
+
+    @Test
+    @DisplayName("find a changed book details : reloaded")
+    public void getChangedBookDetailsTest() throws Exception {
+        Book book = Book.builder().id(12l).title("Dune").author("Frank Herbert").isbn("U12").version(1l).build();
+        BDDMockito.given(service.getById(12l)).willReturn(Optional.of(book));
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("12")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("title").value("Dune"));
+
+        book.setTitle("Dune Messiah");
+        book.setVersion(2l);
+        events.publishEvent(new BookChangedEvent(12l, BookChangedEvent.Change.UPDATED));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("12")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(jsonPath("title").value("Dune Messiah"));
+    }
+
+    @Test
+    @DisplayName("find a book not found with the cache enabled : error validation")
+    public void getMissingBookDetailsTest() throws Exception {
+        BDDMockito.given(service.getById(13l)).willReturn(Optional.empty());
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("13")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -1,36 +1,64 @@
 package br.com.gomestg.libraryapi.api.resource;
 
 import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.api.dto.BookLookupRequestDTO;
 import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
 import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
 import br.com.gomestg.libraryapi.service.BookService;
+import br.com.gomestg.libraryapi.service.CountStrategy;
+import br.com.gomestg.libraryapi.service.feed.BookChange;
+import br.com.gomestg.libraryapi.service.feed.BookChangeFeed;
+import br.com.gomestg.libraryapi.service.queue.BookWriteQueue;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.BDDMockito;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 
+import java.io.IOException;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.hasSize;
 import static org.mockito.ArgumentMatchers.anyLong;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ExtendWith(SpringExtension.class)
@@ -47,6 +75,12 @@ public class BookControllerTest {
     @MockBean
     BookService service;
 
+    @MockBean
+    BookWriteQueue writeQueue;
+
+    @MockBean
+    BookChangeFeed changeFeed;
+
     @Test
     @DisplayName("create a book : successfully")
     public void createBookTest() throws Exception {
@@ -77,6 +111,103 @@ public class BookControllerTest {
         ;
     }
 
+    @Test
+    @DisplayName("create a book from smile : successfully")
+    public void createBookSmileTest() throws Exception {
+        Book savedBook = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+        BDDMockito.given(service.save(Mockito.any(Book.class))).willReturn(savedBook);
+        MediaType smile = MediaType.parseMediaType("application/x-jackson-smile");
+
+        byte[] body = mock.perform(MockMvcRequestBuilders.post(URL)
+                        .contentType(smile)
+                        .accept(smile)
+                        .content(new SmileMapper().writeValueAsBytes(createNewBook())))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(smile))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        BookDTO created = new SmileMapper().readValue(body, BookDTO.class);
+        assertThat(created.getId()).isEqualTo(10l);
+        assertThat(created.getIsbn()).isEqualTo("U1234");
+    }
+
+    @Test
+    @DisplayName("create a book from protobuf : successfully")
+    public void createBookProtobufTest() throws Exception {
+        Book savedBook = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+        BDDMockito.given(service.save(Mockito.any(Book.class))).willReturn(savedBook);
+        MediaType protobuf = MediaType.parseMediaType("application/x-protobuf");
+
+        byte[] body = mock.perform(MockMvcRequestBuilders.post(URL)
+                        .contentType(protobuf)
+                        .accept(protobuf)
+                        .content(new ProtobufMapper().writer(protobufSchema("Book")).writeValueAsBytes(createNewBook())))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(protobuf))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        BookDTO created = new ProtobufMapper().readerFor(BookDTO.class).with(protobufSchema("Book")).readValue(body);
+        assertThat(created.getId()).isEqualTo(10l);
+        assertThat(created.getIsbn()).isEqualTo("U1234");
+    }
+
+    @Test
+    @DisplayName("queue a book to be created : accepted")
+    public void createBookAsyncTest() throws Exception {
+        BookWriteQueue.Ticket ticket = Mockito.mock(BookWriteQueue.Ticket.class);
+        BDDMockito.given(ticket.getId()).willReturn("t1");
+        BDDMockito.given(ticket.getStatus()).willReturn(BookWriteQueue.Status.PENDING);
+        BDDMockito.given(writeQueue.submit(Mockito.any(Book.class), Mockito.eq("key-1"))).willReturn(Optional.of(ticket));
+
+        mock.perform(MockMvcRequestBuilders.post(URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("Prefer", "respond-async")
+                        .header("Idempotency-Key", "key-1")
+                        .content(new ObjectMapper().writeValueAsString(createNewBook())))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/books/writes/t1"))
+                .andExpect(header().string("Preference-Applied", "respond-async"))
+                .andExpect(jsonPath("ticket").value("t1"))
+                .andExpect(jsonPath("status").value("PENDING"));
+
+        Mockito.verify(service, Mockito.never()).save(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("queue a book while the queue is full : too many requests")
+    public void createBookAsyncFullTest() throws Exception {
+        BDDMockito.given(writeQueue.submit(Mockito.any(Book.class), Mockito.isNull())).willReturn(Optional.empty());
+
+        mock.perform(MockMvcRequestBuilders.post(URL)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("Prefer", "respond-async")
+                        .content(new ObjectMapper().writeValueAsString(createNewBook())))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"))
+                .andExpect(jsonPath("errors", hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("find a queued book write : successfully")
+    public void findWriteTest() throws Exception {
+        BookWriteQueue.Ticket ticket = Mockito.mock(BookWriteQueue.Ticket.class);
+        BDDMockito.given(ticket.getId()).willReturn("t1");
+        BDDMockito.given(ticket.getStatus()).willReturn(BookWriteQueue.Status.CREATED);
+        BDDMockito.given(ticket.getBookId()).willReturn(10l);
+        BDDMockito.given(writeQueue.find("t1")).willReturn(Optional.of(ticket));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("/writes/t1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Location", "/api/books/10"))
+                .andExpect(jsonPath("status").value("CREATED"))
+                .andExpect(jsonPath("bookId").value(10));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("/writes/t2")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     @DisplayName("create a book with incomplete information : error validation")
     public void createInvalidBookTest() throws Exception {
@@ -114,6 +245,55 @@ public class BookControllerTest {
                 .andExpect(jsonPath("errors[0]").value(msg));
     }
 
+    @Test
+    @DisplayName("create books in batch from a json array : partial success")
+    public void createBatchTest() throws Exception {
+        BookDTO duplicated = BookDTO.builder().title("Dr. No").author("Ian Fleming").isbn("U4321").build();
+        String json = new ObjectMapper().writeValueAsString(Arrays.asList(createNewBook(), new BookDTO(), duplicated));
+
+        BDDMockito.given(service.saveAll(Mockito.anyList()))
+                .willAnswer(invocation -> Collections.singletonList(((List<Book>) invocation.getArgument(0)).get(0)));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(URL.concat("/batch"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("received").value(3))
+                .andExpect(jsonPath("created").value(1))
+                .andExpect(jsonPath("failures", hasSize(2)))
+                .andExpect(jsonPath("failures[0].index").value(1))
+                .andExpect(jsonPath("failures[0].errors", hasSize(3)))
+                .andExpect(jsonPath("failures[1].index").value(2))
+                .andExpect(jsonPath("failures[1].isbn").value("U4321"))
+                .andExpect(jsonPath("failures[1].errors[0]").value("Isbn already registered"));
+    }
+
+    @Test
+    @DisplayName("create books in batch from ndjson : successfully")
+    public void createBatchNdjsonTest() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        BookDTO other = BookDTO.builder().title("Dr. No").author("Ian Fleming").isbn("U4321").build();
+        String ndjson = objectMapper.writeValueAsString(createNewBook()) + "\n" + objectMapper.writeValueAsString(other) + "\n";
+
+        BDDMockito.given(service.saveAll(Mockito.anyList())).willAnswer(invocation -> invocation.getArgument(0));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(URL.concat("/batch"))
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(ndjson);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("received").value(2))
+                .andExpect(jsonPath("created").value(2))
+                .andExpect(jsonPath("failures", hasSize(0)));
+    }
+
     @Test
     @DisplayName("find a book details : successfully")
     public void getBookDetailsTest() throws Exception {
@@ -139,6 +319,23 @@ public class BookControllerTest {
                 .andExpect(jsonPath("isbn").value(createNewBook().getIsbn()));
     }
 
+    @Test
+    @DisplayName("find a book details with its etag : not modified")
+    public void getBookDetailsNotModifiedTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(3l).build();
+        BDDMockito.given(service.getById(10l)).willReturn(Optional.of(book));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("/10")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"3\""));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("/10"))
+                        .accept(MediaType.APPLICATION_JSON)
+                        .header("If-None-Match", "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
     @Test
     @DisplayName("find a book not found or not exists : error validation")
     public void bookNonexistentTest() throws Exception {
@@ -152,10 +349,110 @@ public class BookControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("find a book by isbn : successfully")
+    public void getBookByIsbnTest() throws Exception {
+        Book book = Book.builder()
+                .id(10l)
+                .title(createNewBook().getTitle())
+                .author(createNewBook().getAuthor())
+                .isbn(createNewBook().getIsbn())
+                .build();
+
+        BDDMockito.given(service.getByIsbn(book.getIsbn())).willReturn(Optional.of(book));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("/isbn/" + book.getIsbn()))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("id").value(10l))
+                .andExpect(jsonPath("isbn").value(book.getIsbn()));
+    }
+
+    @Test
+    @DisplayName("find a book by isbn not found : error validation")
+    public void bookByIsbnNonexistentTest() throws Exception {
+        BDDMockito.given(service.getByIsbn(Mockito.anyString())).willReturn(Optional.empty());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("/isbn/U0000"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("find books by ids : in request order with misses")
+    public void findBooksByIdTest() throws Exception {
+        Book book = Book.builder().id(10l).title("As aventuras").author("Artur").isbn("U1234").build();
+        BDDMockito.given(service.getAllById(Arrays.asList(11l, 10l)))
+                .willReturn(Arrays.asList(Optional.empty(), Optional.of(book)));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("?ids=11,10"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("results", hasSize(2)))
+                .andExpect(jsonPath("results[0].id").value(11))
+                .andExpect(jsonPath("results[0].found").value(false))
+                .andExpect(jsonPath("results[1].id").value(10))
+                .andExpect(jsonPath("results[1].found").value(true))
+                .andExpect(jsonPath("results[1].book.isbn").value("U1234"))
+                .andExpect(jsonPath("missing").value(1));
+    }
+
+    @Test
+    @DisplayName("look books up by isbn : in request order with misses")
+    public void lookupBooksByIsbnTest() throws Exception {
+        Book book = Book.builder().id(10l).title("As aventuras").author("Artur").isbn("U1234").build();
+        BDDMockito.given(service.getAllByIsbn(Arrays.asList("U1234", "U0000")))
+                .willReturn(Arrays.asList(Optional.of(book), Optional.empty()));
+        String json = new ObjectMapper().writeValueAsString(
+                BookLookupRequestDTO.builder().isbns(Arrays.asList("U1234", "U0000")).build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(URL.concat("/lookup"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("results[0].isbn").value("U1234"))
+                .andExpect(jsonPath("results[0].book.id").value(10))
+                .andExpect(jsonPath("results[1].isbn").value("U0000"))
+                .andExpect(jsonPath("results[1].found").value(false))
+                .andExpect(jsonPath("missing").value(1));
+    }
+
+    @Test
+    @DisplayName("look books up by both ids and isbns : error validation")
+    public void lookupBooksByIdAndIsbnTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(BookLookupRequestDTO.builder()
+                .ids(Collections.singletonList(10l))
+                .isbns(Collections.singletonList("U1234"))
+                .build());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .post(URL.concat("/lookup"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(MediaType.APPLICATION_JSON)
+                .content(json);
+
+        mock.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Either ids or isbns must be given"));
+    }
+
     @Test
     @DisplayName("delete a book : successfully")
     public void deleteBookTest() throws Exception {
-        BDDMockito.given(service.getById(anyLong())).willReturn(Optional.of(Book.builder().id(10l).build()));
+        BDDMockito.given(service.deleteById(10l, null)).willReturn(true);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(URL.concat("/" + 10l))
@@ -163,12 +460,14 @@ public class BookControllerTest {
 
         mock.perform(request)
                 .andExpect(status().isNoContent());
+
+        Mockito.verify(service, Mockito.never()).getById(anyLong());
     }
 
     @Test
     @DisplayName("delete a book not found or not exists : error validation")
     public void deleteNonexistentBookTest() throws Exception {
-        BDDMockito.given(service.getById(anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.deleteById(Mockito.anyLong(), Mockito.any())).willReturn(false);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .delete(URL.concat("/" + 10l))
@@ -178,18 +477,31 @@ public class BookControllerTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    @DisplayName("delete a book with a stale etag : precondition failed")
+    public void deleteStaleBookTest() throws Exception {
+        BDDMockito.given(service.deleteById(10l, 3l)).willReturn(false);
+        BDDMockito.given(service.getById(10l)).willReturn(Optional.of(Book.builder().id(10l).version(4l).build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .delete(URL.concat("/" + 10l))
+                .header("If-Match", "\"3\"")
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isPreconditionFailed());
+    }
+
     @Test
     @DisplayName("update a book : successfully")
     public void updateBookTest() throws Exception {
         Long id = 10l;
         String json = new ObjectMapper().writeValueAsString(createNewBook());
 
-        Book updatingBook = Book.builder().id(id).title("Some Book").author("Anyone").isbn("U4321").build();
-        BDDMockito.given(service.getById(id)).willReturn(Optional.of(updatingBook));
+        BDDMockito.given(service.updateById(Mockito.eq(id), Mockito.any(Book.class), Mockito.isNull())).willReturn(true);
 
-        Book updatedBook = Book.builder().id(id).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
-        ;
-        BDDMockito.given(service.update(updatingBook)).willReturn(updatedBook);
+        Book updatedBook = Book.builder().id(id).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(1l).build();
+        BDDMockito.given(service.getById(id)).willReturn(Optional.of(updatedBook));
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(URL.concat("/" + id))
@@ -199,17 +511,58 @@ public class BookControllerTest {
 
         mock.perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
                 .andExpect(jsonPath("id").value(id))
                 .andExpect(jsonPath("title").value(createNewBook().getTitle()))
                 .andExpect(jsonPath("author").value(createNewBook().getAuthor()))
                 .andExpect(jsonPath("isbn").value(createNewBook().getIsbn()));
+
+        Mockito.verify(service).updateById(Mockito.eq(id),
+                Mockito.argThat(book -> book.getTitle().equals("Cassino Royale") && book.getAuthor().equals("Ian Fleming")),
+                Mockito.isNull());
+    }
+
+    @Test
+    @DisplayName("update a book with a stale etag : precondition failed")
+    public void updateStaleBookTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+        BDDMockito.given(service.updateById(Mockito.eq(10l), Mockito.any(Book.class), Mockito.eq(3l))).willReturn(false);
+        BDDMockito.given(service.getById(10l)).willReturn(Optional.of(Book.builder().id(10l).version(4l).build()));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(URL.concat("/10"))
+                .header("If-Match", "\"3\"")
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isPreconditionFailed());
+    }
+
+    @Test
+    @DisplayName("update a book with a foreign etag : precondition failed")
+    public void updateForeignEtagBookTest() throws Exception {
+        String json = new ObjectMapper().writeValueAsString(createNewBook());
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .put(URL.concat("/10"))
+                .header("If-Match", "W/\"abc\"")
+                .content(json)
+                .accept(MediaType.APPLICATION_JSON)
+                .contentType(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verify(service, Mockito.never()).updateById(Mockito.anyLong(), Mockito.any(Book.class), Mockito.any());
     }
 
     @Test
     @DisplayName("update a book not found or not exists : error validation")
     public void updateNonexistentBookTest() throws Exception {
         String json = new ObjectMapper().writeValueAsString(createNewBook());
-        BDDMockito.given(service.getById(anyLong())).willReturn(Optional.empty());
+        BDDMockito.given(service.updateById(Mockito.anyLong(), Mockito.any(Book.class), Mockito.any())).willReturn(false);
 
         MockHttpServletRequestBuilder request = MockMvcRequestBuilders
                 .put(URL.concat("/" + 10l))
@@ -232,7 +585,7 @@ public class BookControllerTest {
                 .isbn(createNewBook().getIsbn())
                 .build();
 
-        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.EXACT)))
                 .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 100), 1));
 
         String query = String.format("?title=%s&author%s&page=0&size=100", book.getTitle(), book.getAuthor());
@@ -248,6 +601,324 @@ public class BookControllerTest {
                 .andExpect(jsonPath("pageable.pageNumber").value(0));
     }
 
+    @Test
+    @DisplayName("find books with a sparse fieldset : successfully")
+    public void findBooksSparseFieldsTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").version(1l).build();
+
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.EXACT)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("?author=Fleming&fields=title")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].title").value("Cassino Royale"))
+                .andExpect(jsonPath("content[0].id").doesNotExist())
+                .andExpect(jsonPath("content[0].isbn").doesNotExist());
+
+        Mockito.verify(service).find(Mockito.argThat(filter -> "Fleming".equals(filter.getAuthor())),
+                Mockito.eq(new HashSet<>(Arrays.asList("title", "id", "version"))),
+                Mockito.any(Pageable.class),
+                Mockito.eq(CountStrategy.EXACT));
+    }
+
+    @Test
+    @DisplayName("find books without a total : successfully")
+    public void findBooksWithoutTotalTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(1l).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.NONE)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), true));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("?count=none&size=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("last").value(false))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("find books with an estimated total : successfully")
+    public void findBooksEstimatedTotalTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").version(1l).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.ESTIMATED)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 1), 5000));
+
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("?count=Estimated&size=1")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("totalElements").value(5000));
+    }
+
+    @Test
+    @DisplayName("find books with an unknown count strategy : error validation")
+    public void findBooksUnknownCountTest() throws Exception {
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("?count=sometimes")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Count must be exact, cached, estimated or none"));
+    }
+
+    @Test
+    @DisplayName("find books as cbor : successfully")
+    public void findBooksCborTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(1l).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.EXACT)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        byte[] body = mock.perform(MockMvcRequestBuilders.get(URL).accept(MediaType.parseMediaType("application/cbor")))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/cbor"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode page = new CBORMapper().readTree(body);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(1);
+        assertThat(page.get("content").get(0).get("title").asText()).isEqualTo("Cassino Royale");
+
+        mock.perform(MockMvcRequestBuilders.get(URL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("find books as protobuf : successfully")
+    public void findBooksProtobufTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(1l).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.EXACT)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+        MediaType protobuf = MediaType.parseMediaType("application/x-protobuf");
+
+        byte[] body = mock.perform(MockMvcRequestBuilders.get(URL.concat("?fields=title")).accept(protobuf))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(protobuf))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode page = new ProtobufMapper().reader(protobufSchema("BookPage")).readTree(body);
+        assertThat(page.get("totalElements").asLong()).isEqualTo(1);
+        assertThat(page.get("content").get(0).get("title").asText()).isEqualTo("Cassino Royale");
+        assertThat(page.get("content").get(0).has("isbn")).isFalse();
+
+        byte[] errors = mock.perform(MockMvcRequestBuilders.get(URL.concat("?count=all")).accept(protobuf))
+                .andExpect(status().isBadRequest())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(new ProtobufMapper().reader(protobufSchema("Errors")).readTree(errors).get("errors").get(0).asText())
+                .isEqualTo("Count must be exact, cached, estimated or none");
+    }
+
+    @Test
+    @DisplayName("find books with an unknown field : error validation")
+    public void findBooksUnknownFieldTest() throws Exception {
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("?fields=title,price")).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors", hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("find books with the page etag : not modified")
+    public void findBooksNotModifiedTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(1l).build();
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.anySet(), Mockito.any(Pageable.class), Mockito.eq(CountStrategy.EXACT)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        String etag = mock.perform(MockMvcRequestBuilders.get(URL).accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mock.perform(MockMvcRequestBuilders.get(URL).accept(MediaType.APPLICATION_JSON).header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        book.setVersion(2l);
+        mock.perform(MockMvcRequestBuilders.get(URL).accept(MediaType.APPLICATION_JSON).header("If-None-Match", etag))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    @DisplayName("find books after a cursor : successfully")
+    public void findBooksAfterCursorTest() throws Exception {
+        Book first = Book.builder().id(11l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+        Book second = Book.builder().id(12l).title("Dr. No").author("Ian Fleming").isbn("U4321").build();
+        String cursor = Base64.getUrlEncoder().withoutPadding().encodeToString("10".getBytes());
+
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.eq(10l), Mockito.eq(2)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(first, second), PageRequest.of(0, 2), true));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("?author=Fleming&size=2&after=" + cursor))
+                .accept(MediaType.APPLICATION_JSON);
+
+        String nextCursor = Base64.getUrlEncoder().withoutPadding().encodeToString("12".getBytes());
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(2)))
+                .andExpect(jsonPath("content[0].id").value(11l))
+                .andExpect(jsonPath("size").value(2))
+                .andExpect(jsonPath("nextCursor").value(nextCursor))
+                .andExpect(jsonPath("totalElements").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("find books from the first cursor page : last page")
+    public void findBooksFirstCursorPageTest() throws Exception {
+        Book book = Book.builder().id(1l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+
+        BDDMockito.given(service.findAfter(Mockito.any(Book.class), Mockito.isNull(), Mockito.eq(20)))
+                .willReturn(new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), false));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("?after="))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("find books after an invalid cursor : error validation")
+    public void findBooksInvalidCursorTest() throws Exception {
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("?after=***"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("errors[0]").value("Invalid cursor"));
+    }
+
+    @Test
+    @DisplayName("search books by text : successfully")
+    public void searchBooksTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+
+        BDDMockito.given(service.search(Mockito.eq("fleming royale"), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("/search?q=fleming royale"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)))
+                .andExpect(jsonPath("content[0].id").value(10l))
+                .andExpect(jsonPath("totalElements").value(1));
+    }
+
+    @Test
+    @DisplayName("search books without text falls back to field filters : successfully")
+    public void searchBooksByFieldsTest() throws Exception {
+        Book book = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(new PageImpl<Book>(Arrays.asList(book), PageRequest.of(0, 20), 1));
+
+        MockHttpServletRequestBuilder request = MockMvcRequestBuilders
+                .get(URL.concat("/search?isbn=U1234"))
+                .accept(MediaType.APPLICATION_JSON);
+
+        mock.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content[0].isbn").value("U1234"));
+
+        Mockito.verify(service, Mockito.never()).search(Mockito.anyString(), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("stream book changes as server-sent events : resuming from the last event id")
+    public void streamChangesTest() throws Exception {
+        ArgumentCaptor<BookChangeFeed.Listener> listener = ArgumentCaptor.forClass(BookChangeFeed.Listener.class);
+        BDDMockito.given(changeFeed.subscribe(Mockito.eq("k3x-41"), listener.capture()))
+                .willReturn(Mockito.mock(BookChangeFeed.Subscription.class));
+        BDDMockito.given(changeFeed.eventId(Mockito.anyLong())).willAnswer(invocation -> "k3x-" + invocation.getArgument(0));
+
+        MvcResult result = mock.perform(MockMvcRequestBuilders.get(URL.concat("/changes"))
+                .header("Last-Event-ID", "k3x-41")
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        listener.getValue().onChanges(Arrays.asList(
+                new BookChange(42, 10l, BookChangedEvent.Change.UPDATED, Instant.parse("2021-08-01T10:00:00Z")),
+                new BookChange(43, 11l, BookChangedEvent.Change.DELETED, Instant.parse("2021-08-01T10:00:01Z"))));
+        listener.getValue().onReset(43);
+
+        mock.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(content().string(
+                        "id:k3x-42\nevent:change\ndata:{\"sequence\":42,\"id\":10,\"change\":\"UPDATED\",\"time\":\"2021-08-01T10:00:00Z\"}\n\n"
+                                + "id:k3x-43\nevent:change\ndata:{\"sequence\":43,\"id\":11,\"change\":\"DELETED\",\"time\":\"2021-08-01T10:00:01Z\"}\n\n"
+                                + "event:reset\ndata:k3x-43\n\n"));
+    }
+
+    @Test
+    @DisplayName("stream book changes as server-sent events : ending the stream when the feed drops it")
+    public void streamChangesDroppedTest() throws Exception {
+        ArgumentCaptor<BookChangeFeed.Listener> listener = ArgumentCaptor.forClass(BookChangeFeed.Listener.class);
+        BDDMockito.given(changeFeed.subscribe(Mockito.isNull(), listener.capture()))
+                .willReturn(Mockito.mock(BookChangeFeed.Subscription.class));
+        BDDMockito.given(changeFeed.eventId(Mockito.anyLong())).willAnswer(invocation -> "k3x-" + invocation.getArgument(0));
+
+        MvcResult result = mock.perform(MockMvcRequestBuilders.get(URL.concat("/changes"))
+                .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        listener.getValue().onChanges(Collections.singletonList(
+                new BookChange(42, 10l, BookChangedEvent.Change.UPDATED, Instant.parse("2021-08-01T10:00:00Z"))));
+        listener.getValue().onDropped();
+
+        mock.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "id:k3x-42\nevent:change\ndata:{\"sequence\":42,\"id\":10,\"change\":\"UPDATED\",\"time\":\"2021-08-01T10:00:00Z\"}\n\n"));
+    }
+
+    @Test
+    @DisplayName("export books as ndjson : successfully")
+    public void exportNdjsonTest() throws Exception {
+        givenExportedBooks();
+
+        MvcResult result = mock.perform(MockMvcRequestBuilders.get(URL.concat("/export")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mock.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"title\":\"Cassino Royale\",\"author\":\"Ian Fleming\",\"isbn\":\"U1\"}\n"
+                                + "{\"id\":2,\"title\":\"Dr. No, \\\"the\\\" first film\",\"author\":\"Ian Fleming\",\"isbn\":\"U2\"}"));
+    }
+
+    @Test
+    @DisplayName("export books as csv : successfully")
+    public void exportCsvTest() throws Exception {
+        givenExportedBooks();
+
+        MvcResult result = mock.perform(MockMvcRequestBuilders.get(URL.concat("/export?format=csv")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mock.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(content().string("id,title,author,isbn\n"
+                        + "1,Cassino Royale,Ian Fleming,U1\n"
+                        + "2,\"Dr. No, \"\"the\"\" first film\",Ian Fleming,U2\n"));
+    }
+
+    @Test
+    @DisplayName("export books in an unknown format : error validation")
+    public void exportUnknownFormatTest() throws Exception {
+        mock.perform(MockMvcRequestBuilders.get(URL.concat("/export?format=xml")))
+                .andExpect(status().isBadRequest());
+    }
+
+    private void givenExportedBooks() {
+        BDDMockito.willAnswer(invocation -> {
+            Consumer<Book> consumer = invocation.getArgument(0);
+            consumer.accept(Book.builder().id(1l).title("Cassino Royale").author("Ian Fleming").isbn("U1").build());
+            consumer.accept(Book.builder().id(2l).title("Dr. No, \"the\" first film").author("Ian Fleming").isbn("U2").build());
+            return null;
+        }).given(service).export(Mockito.any());
+    }
+
     private BookDTO createNewBook() {
         return BookDTO.builder()
                 .title("Cassino Royale")
@@ -255,4 +926,8 @@ public class BookControllerTest {
                 .isbn("U1234")
                 .build();
     }
+
+    private static ProtobufSchema protobufSchema(String message) throws IOException {
+        return ProtobufSchemaLoader.std.loadNative(new ClassPathResource("proto/books.proto").getURL()).forType(message);
+    }
 }
@@ -0,0 +1,108 @@
+package br.com.gomestg.libraryapi.api.resource;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookResponseCacheTest {
+
+    BookResponseCache cache = new BookResponseCache(writers(), 1024 * 1024);
+
+    @Test
+    @DisplayName("negotiate the preferred cached media type")
+    public void negotiateTest() {
+        assertThat(cache.negotiate(null)).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(cache.negotiate("*/*")).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(cache.negotiate("application/json;q=0.5, application/cbor")).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(cache.negotiate("text/csv")).isNull();
+        assertThat(cache.negotiate("not a media type")).isNull();
+    }
+
+    @Test
+    @DisplayName("keep encoded bodies per book and media type off-heap")
+    public void putTest() {
+        BookResponseCache.Entry entry = cache.put(10l, MediaType.APPLICATION_JSON, "\"1\"", createBook(10l), cache.stamp());
+
+        BookResponseCache.Entry cached = cache.get(10l, MediaType.APPLICATION_JSON);
+        assertThat(cached).isSameAs(entry);
+        assertThat(cached.getEtag()).isEqualTo("\"1\"");
+        assertThat(cached.getBody().isDirect()).isTrue();
+        assertThat(text(cached.getBody())).contains("\"title\":\"Cassino Royale\"");
+        assertThat(text(cached.getBody())).isEqualTo(text(cached.getBody()));
+        assertThat(cache.get(10l, MediaType.APPLICATION_CBOR)).isNull();
+    }
+
+    @Test
+    @DisplayName("drop every encoding of a changed book")
+    public void invalidationTest() {
+        cache.put(10l, MediaType.APPLICATION_JSON, "\"1\"", createBook(10l), cache.stamp());
+        cache.put(10l, MediaType.APPLICATION_CBOR, "\"1\"", createBook(10l), cache.stamp());
+        cache.put(11l, MediaType.APPLICATION_JSON, "\"1\"", createBook(11l), cache.stamp());
+
+        cache.onBookChanged(new BookChangedEvent(10l, BookChangedEvent.Change.UPDATED));
+
+        assertThat(cache.get(10l, MediaType.APPLICATION_JSON)).isNull();
+        assertThat(cache.get(10l, MediaType.APPLICATION_CBOR)).isNull();
+        assertThat(cache.get(11l, MediaType.APPLICATION_JSON)).isNotNull();
+    }
+
+    @Test
+    @DisplayName("not cache a body loaded before a write")
+    public void staleLoadTest() {
+        long stamp = cache.stamp();
+        cache.onBookChanged(new BookChangedEvent(10l, BookChangedEvent.Change.UPDATED));
+
+        BookResponseCache.Entry entry = cache.put(10l, MediaType.APPLICATION_JSON, "\"1\"", createBook(10l), stamp);
+
+        assertThat(entry.getBody().remaining()).isPositive();
+        assertThat(cache.get(10l, MediaType.APPLICATION_JSON)).isNull();
+    }
+
+    @Test
+    @DisplayName("evict bodies beyond the byte bound")
+    public void boundTest() {
+        int size = new BookResponseCache(writers(), 1024).put(1l, MediaType.APPLICATION_JSON, null, createBook(1l), 0)
+                .getBody().remaining();
+        BookResponseCache small = new BookResponseCache(writers(), size * 3);
+
+        for (long id = 1; id <= 10; id++) {
+            small.put(id, MediaType.APPLICATION_JSON, null, createBook(id), small.stamp());
+        }
+        small.cleanUp();
+
+        int cached = 0;
+        for (long id = 1; id <= 10; id++) {
+            if (small.get(id, MediaType.APPLICATION_JSON) != null) {
+                cached++;
+            }
+        }
+        assertThat(cached).isBetween(1, 3);
+    }
+
+    private static Map<MediaType, ObjectWriter> writers() {
+        Map<MediaType, ObjectWriter> writers = new LinkedHashMap<>();
+        writers.put(MediaType.APPLICATION_JSON, new ObjectMapper().writer());
+        writers.put(MediaType.APPLICATION_CBOR, new CBORMapper().writer());
+        return writers;
+    }
+
+    private static BookDTO createBook(Long id) {
+        return BookDTO.builder().id(id).title("Cassino Royale").author("Ian Fleming").isbn("U" + id).build();
+    }
+
+    private static String text(ByteBuffer buffer) {
+        return StandardCharsets.UTF_8.decode(buffer).toString();
+    }
+}
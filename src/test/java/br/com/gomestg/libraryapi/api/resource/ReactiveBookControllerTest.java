@@ -0,0 +1,209 @@
+package br.com.gomestg.libraryapi.api.resource;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.ReactiveBookService;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("reactive")
+@WebFluxTest(controllers = ReactiveBookController.class)
+public class ReactiveBookControllerTest {
+
+    static String URL = "/api/books";
+
+    @Autowired
+    WebTestClient client;
+
+    @MockBean
+    ReactiveBookService service;
+
+    @Test
+    @DisplayName("create a book : successfully")
+    public void createBookTest() {
+        BDDMockito.given(service.save(Mockito.any(Book.class))).willReturn(Mono.just(createBook()));
+
+        client.post().uri(URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody()
+                .jsonPath("id").isEqualTo(10)
+                .jsonPath("title").isEqualTo("Cassino Royale")
+                .jsonPath("isbn").isEqualTo("U1234");
+    }
+
+    @Test
+    @DisplayName("create a book with incomplete information : error validation")
+    public void createInvalidBookTest() {
+        client.post().uri(URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(new BookDTO())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors.length()").isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("create a book with isbn duplicated : error validation")
+    public void createBookDuplicatedIsbnTest() {
+        BDDMockito.given(service.save(Mockito.any(Book.class)))
+                .willReturn(Mono.error(new LibraryBusinessException("Isbn already registered")));
+
+        client.post().uri(URL)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("errors[0]").isEqualTo("Isbn already registered");
+    }
+
+    @Test
+    @DisplayName("find a book details with its etag, then answer a matching If-None-Match with 304")
+    public void getBookDetailsTest() {
+        BDDMockito.given(service.getById(10l)).willReturn(Mono.just(createBook()));
+
+        client.get().uri(URL + "/10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody()
+                .jsonPath("id").isEqualTo(10)
+                .jsonPath("author").isEqualTo("Ian Fleming");
+
+        client.get().uri(URL + "/10")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"")
+                .exchange()
+                .expectStatus().isNotModified();
+    }
+
+    @Test
+    @DisplayName("find a missing book : not found")
+    public void bookNotFoundTest() {
+        BDDMockito.given(service.getById(anyLong())).willReturn(Mono.empty());
+
+        client.get().uri(URL + "/10")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("update a book with a matching If-Match : successfully")
+    public void updateBookTest() {
+        BDDMockito.given(service.updateById(Mockito.eq(10l), Mockito.any(Book.class), Mockito.eq(3l)))
+                .willReturn(Mono.just(true));
+        Book updated = createBook();
+        updated.setVersion(4l);
+        BDDMockito.given(service.getById(10l)).willReturn(Mono.just(updated));
+
+        client.put().uri(URL + "/10")
+                .header(HttpHeaders.IF_MATCH, "\"3\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"4\"");
+    }
+
+    @Test
+    @DisplayName("update a book with a stale If-Match : precondition failed")
+    public void updateStaleBookTest() {
+        BDDMockito.given(service.updateById(Mockito.eq(10l), Mockito.any(Book.class), Mockito.eq(2l)))
+                .willReturn(Mono.just(false));
+        BDDMockito.given(service.getById(10l)).willReturn(Mono.just(createBook()));
+
+        client.put().uri(URL + "/10")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(createNewBook())
+                .exchange()
+                .expectStatus().isEqualTo(412);
+    }
+
+    @Test
+    @DisplayName("delete a book : successfully, then not found")
+    public void deleteBookTest() {
+        BDDMockito.given(service.deleteById(10l, null)).willReturn(Mono.just(true), Mono.just(false));
+
+        client.delete().uri(URL + "/10")
+                .exchange()
+                .expectStatus().isNoContent();
+
+        client.delete().uri(URL + "/10")
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    @DisplayName("filter books by page")
+    public void findBooksTest() {
+        Pageable pageable = PageRequest.of(0, 100);
+        BDDMockito.given(service.find(Mockito.any(Book.class), Mockito.any(Pageable.class)))
+                .willReturn(Mono.just(new PageImpl<>(Collections.singletonList(createBook()), pageable, 1)));
+
+        client.get().uri(URL + "?title=royale&page=0&size=100")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("content.length()").isEqualTo(1)
+                .jsonPath("totalElements").isEqualTo(1)
+                .jsonPath("pageable.pageSize").isEqualTo(100);
+
+        Mockito.verify(service).find(Mockito.argThat(filter -> "royale".equals(filter.getTitle())),
+                Mockito.eq(pageable));
+    }
+
+    @Test
+    @DisplayName("stream books as ndjson")
+    public void exportTest() {
+        Book other = Book.builder().id(11l).title("Dr. No").author("Ian Fleming").isbn("U4321").version(0l).build();
+        BDDMockito.given(service.stream(Mockito.any(Book.class))).willReturn(Flux.just(createBook(), other));
+
+        String body = client.get().uri(URL + "/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBody(String.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertThat(body.split("\n")).hasSize(2);
+        assertThat(Arrays.asList(body.split("\n")).get(1)).contains("\"isbn\":\"U4321\"");
+    }
+
+    private BookDTO createNewBook() {
+        return BookDTO.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+    }
+
+    private Book createBook() {
+        return Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").version(3l).build();
+    }
+}
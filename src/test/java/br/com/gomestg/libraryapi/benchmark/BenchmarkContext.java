@@ -0,0 +1,86 @@
+package br.com.gomestg.libraryapi.benchmark;
+
+import br.com.gomestg.libraryapi.LibraryApiApplication;
+import br.com.gomestg.libraryapi.service.search.BookSearchIndex;
+import org.hibernate.SessionFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Boots the application (by default without the web layer) against a private H2 database,
+ * reachable over both JDBC and R2DBC, and seeds it with a deterministic catalog.
+ */
+final class BenchmarkContext {
+
+    private static final int SEED_BATCH = 5_000;
+    private static final String INSERT = "insert into book (id, title, author, isbn, version) values (?, ?, ?, ?, 0)";
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, new Class<?>[0], properties);
+    }
+
+    static ConfigurableApplicationContext start(WebApplicationType type, Class<?>[] sources, String... properties) {
+        String database = "bench-" + UUID.randomUUID();
+        List<String> args = new ArrayList<>();
+        args.add("--spring.datasource.url=jdbc:h2:mem:" + database + ";DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        args.add("--spring.r2dbc.url=r2dbc:h2:mem:///" + database + "?options=DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE");
+        args.add("--spring.devtools.restart.enabled=false");
+        args.add("--spring.jpa.open-in-view=false");
+        args.add("--logging.level.root=WARN");
+        for (String property : properties) {
+            args.add("--" + property);
+        }
+        return new SpringApplicationBuilder(LibraryApiApplication.class)
+                .sources(sources)
+                .web(type)
+                .run(args.toArray(new String[0]));
+    }
+
+    static void seed(ConfigurableApplicationContext context, int books) {
+        // the reactive profile has no JDBC beans, so reach its in-memory database directly
+        JdbcTemplate jdbc = context.getBeanProvider(JdbcTemplate.class).getIfAvailable(() ->
+                new JdbcTemplate(new DriverManagerDataSource(context.getEnvironment().getRequiredProperty("spring.datasource.url"))));
+        List<Object[]> batch = new ArrayList<>(SEED_BATCH);
+        for (int i = 0; i < books; i++) {
+            batch.add(new Object[]{i + 1L, title(i), author(i), isbn(i)});
+            if (batch.size() == SEED_BATCH) {
+                jdbc.batchUpdate(INSERT, batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbc.batchUpdate(INSERT, batch);
+        }
+        // keep the pooled id generator clear of the seeded ids
+        jdbc.execute("alter sequence book_seq restart with " + (books + 100));
+        context.getBeanProvider(BookSearchIndex.class).ifAvailable(BookSearchIndex::rebuild);
+        // raw inserts bypass Hibernate, so drop anything the second-level cache already holds
+        context.getBeanProvider(EntityManagerFactory.class).ifAvailable(emf -> {
+            emf.getCache().evictAll();
+            emf.unwrap(SessionFactory.class).getCache().evictQueryRegions();
+        });
+    }
+
+    static String title(int i) {
+        return "Book " + i + " volume " + (i % 7);
+    }
+
+    static String author(int i) {
+        return "Author " + (i % 1_000);
+    }
+
+    static String isbn(int i) {
+        return "S" + i;
+    }
+}
@@ -0,0 +1,149 @@
+package br.com.gomestg.libraryapi.benchmark;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.r2dbc.connection.DelegatingConnectionFactory;
+import reactor.core.publisher.Mono;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Load test of {@code GET /api/books/{id}} over HTTP, comparing the servlet stack on platform
+ * ({@code platform}) or virtual ({@code virtual}) request threads with the WebFlux and R2DBC
+ * stack ({@code reactive}), and with platform threads answering from the encoded response
+ * cache ({@code cached}).
+ * <p>
+ * Every connection checkout is delayed by {@link #latencyMs} to stand in for a slow database
+ * (a blocking sleep over JDBC, a timer over R2DBC), the read caches are disabled, and the Tomcat
+ * worker pool is kept below the connection pools so the platform mode is thread-bound. Reports
+ * throughput and the latency distribution (p99). {@code virtual} needs a Java 21+ runtime, which
+ * the build does not: {@code mvn -Pbenchmark verify -Djmh.include=BookHttp -Djmh.jvm=<jdk-21>/bin/java}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(128)
+@Fork(1)
+public class BookHttpBenchmark {
+
+    private static final int BOOKS = 10_000;
+
+    @Param({"platform", "virtual", "reactive", "cached"})
+    String stack;
+
+    @Param({"5"})
+    long latencyMs;
+
+    ConfigurableApplicationContext context;
+    HttpClient client;
+    String url;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean reactive = stack.equals("reactive");
+        context = BenchmarkContext.start(reactive ? WebApplicationType.REACTIVE : WebApplicationType.SERVLET,
+                new Class<?>[]{SlowDatabase.class},
+                "spring.profiles.active=" + (reactive ? "reactive" : "default"),
+                "server.port=0",
+                "server.tomcat.threads.max=32",
+                "spring.datasource.hikari.maximum-pool-size=64",
+                "spring.r2dbc.pool.max-size=64",
+                "spring.cache.type=none",
+                "spring.jpa.properties.hibernate.cache.use_second_level_cache=false",
+                "spring.jpa.properties.hibernate.cache.use_query_cache=false",
+                "library.response-cache.enabled=" + stack.equals("cached"),
+                "benchmark.db-latency-ms=" + latencyMs,
+                "library.virtual-threads.enabled=" + stack.equals("virtual"));
+        BenchmarkContext.seed(context, BOOKS);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        url = "http://localhost:" + port + "/api/books/";
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int getById() throws Exception {
+        long id = 1 + ThreadLocalRandom.current().nextInt(BOOKS);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + id)).GET().build();
+        return client.send(request, HttpResponse.BodyHandlers.ofByteArray()).statusCode();
+    }
+
+    // deliberately unannotated: registered as a source above, but never picked up by component scanning
+    static class SlowDatabase {
+
+        @Bean
+        static BeanPostProcessor slowDataSourcePostProcessor(Environment environment) {
+            long latencyMs = environment.getRequiredProperty("benchmark.db-latency-ms", Long.class);
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource && !(bean instanceof SlowDataSource)) {
+                        return new SlowDataSource((DataSource) bean, latencyMs);
+                    }
+                    if (bean instanceof ConnectionFactory && !(bean instanceof SlowConnectionFactory)) {
+                        return new SlowConnectionFactory((ConnectionFactory) bean, latencyMs);
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    static class SlowDataSource extends DelegatingDataSource {
+
+        private final long latencyMs;
+
+        SlowDataSource(DataSource target, long latencyMs) {
+            super(target);
+            this.latencyMs = latencyMs;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Connection connection = super.getConnection();
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return connection;
+        }
+    }
+
+    static class SlowConnectionFactory extends DelegatingConnectionFactory {
+
+        private final Duration latency;
+
+        SlowConnectionFactory(ConnectionFactory target, long latencyMs) {
+            super(target);
+            this.latency = Duration.ofMillis(latencyMs);
+        }
+
+        @Override
+        public Mono<? extends io.r2dbc.spi.Connection> create() {
+            return super.create().delayElement(latency);
+        }
+    }
+}
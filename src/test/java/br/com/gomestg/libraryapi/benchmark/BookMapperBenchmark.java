@@ -0,0 +1,65 @@
+package br.com.gomestg.libraryapi.benchmark;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.api.mapper.BookMapper;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Per-row mapping cost of {@link BookMapper} against the former ModelMapper path.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookMapperBenchmark {
+
+    @Param({"1", "100"})
+    int rows;
+
+    ModelMapper modelMapper;
+    BookMapper bookMapper;
+    List<Book> books;
+    BookDTO dto;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        bookMapper = new BookMapper();
+        books = new ArrayList<>(rows);
+        for (long i = 0; i < rows; i++) {
+            books.add(Book.builder().id(i).title("Cassino Royale " + i).author("Ian Fleming").isbn("U" + i).build());
+        }
+        dto = BookDTO.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+    }
+
+    @Benchmark
+    public List<BookDTO> modelMapperToDto() {
+        return books.stream()
+                .map(entity -> modelMapper.map(entity, BookDTO.class))
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public List<BookDTO> bookMapperToDto() {
+        return bookMapper.toDtoList(books);
+    }
+
+    @Benchmark
+    public Book modelMapperToEntity() {
+        return modelMapper.map(dto, Book.class);
+    }
+
+    @Benchmark
+    public Book bookMapperToEntity() {
+        return bookMapper.toEntity(dto);
+    }
+}
@@ -0,0 +1,106 @@
+package br.com.gomestg.libraryapi.benchmark;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serialization of the {@code Page<BookDTO>} returned by {@code GET /api/books} in each
+ * negotiable {@link #format}, and parsing it back as a client would. Payload sizes, raw and
+ * gzipped, are printed once per trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookSerializationBenchmark {
+
+    @Param({"20", "100", "1000"})
+    int size;
+
+    @Param({"json", "cbor", "smile", "protobuf"})
+    String format;
+
+    ObjectWriter writer;
+    ObjectReader reader;
+    Page<BookDTO> page;
+    byte[] payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if (format.equals("cbor")) {
+            builder.factory(new CBORFactory());
+        } else if (format.equals("smile")) {
+            builder.factory(new SmileFactory());
+        } else if (format.equals("protobuf")) {
+            builder.factory(new ProtobufFactory());
+        }
+        ObjectMapper objectMapper = builder.build();
+        writer = objectMapper.writer();
+        reader = objectMapper.reader();
+        if (format.equals("protobuf")) {
+            // as BinaryFormatsConfiguration sets it up
+            objectMapper.enable(JsonGenerator.Feature.IGNORE_UNKNOWN).addMixIn(Slice.class, SliceMixIn.class);
+            ProtobufSchema schema = ProtobufSchemaLoader.std.loadNative(new ClassPathResource("proto/books.proto").getURL())
+                    .forType("BookPage");
+            writer = objectMapper.writer(schema);
+            reader = objectMapper.reader(schema);
+        }
+        List<BookDTO> content = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            content.add(BookDTO.builder()
+                    .id((long) i)
+                    .title(BenchmarkContext.title(i))
+                    .author(BenchmarkContext.author(i))
+                    .isbn(BenchmarkContext.isbn(i))
+                    .build());
+        }
+        page = new PageImpl<>(content, PageRequest.of(0, size), 1_000_000);
+        payload = writer.writeValueAsBytes(page);
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+            gzip.write(payload);
+        }
+        System.out.printf("%n%s page of %d: %d bytes, %d gzipped%n", format, size, payload.length, gzipped.size());
+    }
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public JsonNode parsePage() throws Exception {
+        return reader.readTree(payload);
+    }
+
+    @JsonIgnoreProperties({"pageable", "sort"})
+    interface SliceMixIn {
+    }
+}
@@ -0,0 +1,119 @@
+package br.com.gomestg.libraryapi.benchmark;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.BookService;
+import br.com.gomestg.libraryapi.service.CountStrategy;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Service hot paths against H2 seeded with {@link #books} rows, with the default data-access
+ * settings or those of the {@code perf} profile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookServiceBenchmark {
+
+    private static final int BATCH = 200;
+
+    @Param({"10000", "1000000"})
+    int books;
+
+    @Param({"default", "perf"})
+    String profile;
+
+    ConfigurableApplicationContext context;
+    BookService service;
+    AtomicLong sequence = new AtomicLong();
+    PageRequest pageRequest = PageRequest.of(0, 20);
+    Set<String> allFields = new HashSet<>(Arrays.asList("id", "title", "author", "isbn", "version"));
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("spring.profiles.active=" + profile);
+        BenchmarkContext.seed(context, books);
+        service = context.getBean(BookService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Book save() {
+        long n = sequence.incrementAndGet();
+        return service.save(Book.builder().title("New " + n).author("Bench").isbn("B" + n).build());
+    }
+
+    @Benchmark
+    public List<Book> saveAll() {
+        List<Book> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            long n = sequence.incrementAndGet();
+            batch.add(Book.builder().title("New " + n).author("Bench").isbn("B" + n).build());
+        }
+        return service.saveAll(batch);
+    }
+
+    @Benchmark
+    public Optional<Book> getById() {
+        return service.getById(1 + sequence.incrementAndGet() % books);
+    }
+
+    @Benchmark
+    public Page<Book> findByTitle() {
+        return service.find(Book.builder().title("volume 3").build(), pageRequest);
+    }
+
+    @Benchmark
+    public Slice<Book> findProjectedByTitle() {
+        return service.find(Book.builder().title("volume 3").build(), allFields, pageRequest, CountStrategy.EXACT);
+    }
+
+    @Benchmark
+    public Slice<Book> findProjectedByTitleCachedCount() {
+        return service.find(Book.builder().title("volume 3").build(), allFields, pageRequest, CountStrategy.CACHED);
+    }
+
+    @Benchmark
+    public Slice<Book> findProjectedByTitleEstimatedCount() {
+        return service.find(Book.builder().title("volume 3").build(), allFields, pageRequest, CountStrategy.ESTIMATED);
+    }
+
+    @Benchmark
+    public Slice<Book> findProjectedByTitleWithoutCount() {
+        return service.find(Book.builder().title("volume 3").build(), allFields, pageRequest, CountStrategy.NONE);
+    }
+
+    @Benchmark
+    public Page<Book> findByAuthor() {
+        return service.find(Book.builder().author(BenchmarkContext.author(42)).build(), pageRequest);
+    }
+
+    @Benchmark
+    public Page<Book> searchByTitle() {
+        return service.search("volume 3", pageRequest);
+    }
+
+    @Benchmark
+    public Page<Book> findDeepPage() {
+        return service.find(new Book(), PageRequest.of(books / 20 / 2, 20));
+    }
+}
@@ -0,0 +1,49 @@
+package br.com.gomestg.libraryapi.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConnectionLimitingDataSourceTest {
+
+    @Test
+    @DisplayName("hand out at most the configured connections until they are closed")
+    public void limitTest() throws SQLException {
+        DataSource target = Mockito.mock(DataSource.class);
+        Mockito.when(target.getConnection()).then(invocation -> Mockito.mock(Connection.class));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, 2, 10);
+
+        Connection first = dataSource.getConnection();
+        Connection second = dataSource.getConnection();
+
+        assertThat(dataSource.getAvailablePermits()).isZero();
+        assertThrows(SQLTransientConnectionException.class, dataSource::getConnection);
+
+        first.close();
+        first.close();
+
+        assertThat(dataSource.getAvailablePermits()).isOne();
+        assertThat(dataSource.getConnection()).isNotNull();
+        second.close();
+    }
+
+    @Test
+    @DisplayName("give the permit back when the pool fails")
+    public void failureTest() throws SQLException {
+        DataSource target = Mockito.mock(DataSource.class);
+        Mockito.when(target.getConnection()).thenThrow(new SQLException("pool exhausted"));
+        ConnectionLimitingDataSource dataSource = new ConnectionLimitingDataSource(target, 1, 10);
+
+        assertThrows(SQLException.class, dataSource::getConnection);
+
+        assertThat(dataSource.getAvailablePermits()).isOne();
+    }
+}
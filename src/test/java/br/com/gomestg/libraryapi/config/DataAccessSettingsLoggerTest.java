@@ -0,0 +1,35 @@
+package br.com.gomestg.libraryapi.config;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith({SpringExtension.class, OutputCaptureExtension.class})
+@ActiveProfiles({"test", "perf"})
+@SpringBootTest
+public class DataAccessSettingsLoggerTest {
+
+    @Autowired
+    DataAccessSettingsLogger settingsLogger;
+
+    @Test
+    @DisplayName("perf profile settings as resolved by the pool, H2 and Hibernate")
+    public void logPerfSettingsTest(CapturedOutput output) {
+        settingsLogger.logSettings();
+
+        assertThat(output)
+                .contains("maximumPoolSize=10, minimumIdle=10, connectionTimeout=5000ms, autoCommit=false")
+                .contains("QUERY_CACHE_SIZE=128")
+                .contains("batch_size=100, order_inserts=true, order_updates=true, batch_versioned_data=true, fetch_size=100, provider_disables_autocommit=true")
+                .contains("plan_cache_max_size=4096, plan_parameter_metadata_max_size=256, in_clause_parameter_padding=true")
+                .doesNotContain("every statement commits on its own", "inserts of mixed entities break batches");
+    }
+}
@@ -0,0 +1,63 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+public class MetricsConfigurationTest {
+
+    @Autowired
+    MockMvc mock;
+
+    @Autowired
+    BookRepository repository;
+
+    @Test
+    @DisplayName("scrape endpoint, repository, query and mapping meters in prometheus format")
+    public void prometheusScrapeTest() throws Exception {
+        repository.deleteAll();
+        BookDTO dto = BookDTO.builder().title("Cassino Royale").author("Ian Fleming").isbn("M1234").build();
+        mock.perform(post("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto)))
+                .andExpect(status().isCreated());
+        mock.perform(get("/api/books?title=royale&size=1")).andExpect(status().isOk());
+        mock.perform(get("/api/books?title=royale&size=1&page=1")).andExpect(status().isOk());
+
+        String scrape = mock.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("http_server_requests_seconds_bucket{application=\"library-api\"")
+                .containsPattern("http_server_requests_seconds_count\\{.*uri=\"/api/books\".*} 2.0")
+                .containsPattern("spring_data_repository_invocations_seconds_bucket\\{.*method=\"saveAndFlush\"")
+                .containsPattern("library_repository_statements_total\\{.*method=\"saveAndFlush\",.*statement=\"insert\".*} 1.0")
+                .containsPattern("library_repository_statements_total\\{.*method=\"findProjected\",.*statement=\"count\"")
+                .containsPattern("library_book_mapping_seconds_count\\{.*operation=\"toDtoList\".*} 2.0")
+                .contains("hikaricp_connections_active")
+                .containsPattern("cache_gets_total\\{.*cache=\"books\"")
+                .containsPattern("cache_gets_total\\{.*cache=\"book\",cacheManager=\"hibernate\",.*result=\"miss\"");
+    }
+}
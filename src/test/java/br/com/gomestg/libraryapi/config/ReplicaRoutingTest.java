@@ -0,0 +1,173 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.api.dto.BookDTO;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import br.com.gomestg.libraryapi.service.BookService;
+import br.com.gomestg.libraryapi.service.ReadYourWrites;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.EntityManagerFactory;
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Routing against a primary and two replicas, each its own in-memory H2 database. Replicas get
+ * the primary's schema but no replication, so where a row was read from shows which one served it.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.replicas.enabled=true",
+        "library.replicas.urls=jdbc:h2:mem:replica-a;DB_CLOSE_DELAY=-1,jdbc:h2:mem:replica-b;DB_CLOSE_DELAY=-1"
+})
+@AutoConfigureMockMvc
+public class ReplicaRoutingTest {
+
+    static final String INSERT = "insert into book (id, title, author, isbn, version) values (?, ?, 'Replica', ?, 0)";
+
+    @Autowired
+    MockMvc mock;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ReadWriteRoutingDataSource routing;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    JdbcTemplate primary;
+    List<JdbcTemplate> replicas;
+
+    @BeforeEach
+    public void setUp() {
+        // outside a transaction everything goes to the primary
+        primary = new JdbcTemplate(routing);
+        primary.update("delete from book");
+        cacheManager.getCache("books").clear();
+        entityManagerFactory.getCache().evictAll();
+        replicas = Arrays.asList(
+                new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:replica-a;DB_CLOSE_DELAY=-1")),
+                new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:replica-b;DB_CLOSE_DELAY=-1")));
+        List<String> schema = primary.queryForList("script nodata", String.class);
+        for (JdbcTemplate replica : replicas) {
+            replica.execute("drop all objects");
+            schema.forEach(replica::execute);
+        }
+    }
+
+    @Test
+    @DisplayName("read-only transactions take turns on the replicas, the rest go to the primary")
+    public void routeReadOnlyTransactionsTest() {
+        replicas.get(0).update(INSERT, 1, "From a", "A1");
+        replicas.get(1).update(INSERT, 1, "From b", "B1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        TransactionTemplate readWrite = new TransactionTemplate(transactionManager);
+
+        Set<String> read = new HashSet<>();
+        for (int i = 0; i < 2; i++) {
+            read.add(readOnly.execute(status -> jdbc.queryForObject("select title from book", String.class)));
+        }
+        Integer onPrimary = readWrite.execute(status -> jdbc.queryForObject("select count(*) from book", Integer.class));
+
+        assertThat(read).containsExactlyInAnyOrder("From a", "From b");
+        assertThat(onPrimary).isZero();
+        assertThat(routing.getReplicaReads()).isGreaterThanOrEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("a client reads its own writes from the primary, others from the replicas")
+    public void readYourWritesTest() throws Exception {
+        BookDTO dto = BookDTO.builder().title("Cassino Royale").author("Ian Fleming").isbn("R1234").build();
+
+        MvcResult created = mock.perform(post("/api/books")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(new ObjectMapper().writeValueAsString(dto)))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesFilter.COOKIE))
+                .andReturn();
+        Cookie pinned = created.getResponse().getCookie(ReadYourWritesFilter.COOKIE);
+
+        assertThat(primary.queryForObject("select count(*) from book where isbn = 'R1234'", Integer.class)).isOne();
+        mock.perform(get("/api/books?isbn=R1234").cookie(pinned))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(1)));
+        mock.perform(get("/api/books?title=royale"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("content", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("read books by id from the replicas without caching them, and cache what a client that wrote reads from the primary")
+    public void cacheFromPrimaryTest() {
+        primary.update(INSERT, 1000, "Current", "C1000");
+        replicas.forEach(replica -> replica.update(INSERT, 1000, "Stale", "C1000"));
+        replicas.forEach(replica -> replica.update(INSERT, 1001, "Stale", "C1001"));
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        readOnly.executeWithoutResult(status -> repository.findAllById(Collections.singletonList(1001l)));
+        assertThat(entityManagerFactory.getCache().contains(Book.class, 1001l)).isFalse();
+
+        long replicaReads = routing.getReplicaReads();
+        assertThat(service.getById(1000l)).map(Book::getTitle).contains("Stale");
+        assertThat(routing.getReplicaReads()).isEqualTo(replicaReads + 1);
+        assertThat(entityManagerFactory.getCache().contains(Book.class, 1000l)).isFalse();
+        assertThat(cacheManager.getCache("books").get(1000l)).isNull();
+
+        ReadYourWrites.pin();
+        try {
+            assertThat(service.getById(1000l)).map(Book::getTitle).contains("Current");
+        } finally {
+            ReadYourWrites.unpin();
+        }
+        assertThat(service.getById(1000l)).map(Book::getTitle).contains("Current");
+        assertThat(routing.getReplicaReads()).isEqualTo(replicaReads + 1);
+    }
+}
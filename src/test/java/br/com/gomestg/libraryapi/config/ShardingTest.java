@@ -0,0 +1,198 @@
+package br.com.gomestg.libraryapi.config;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.shard.BookShardRebalancer;
+import br.com.gomestg.libraryapi.model.shard.BookShards;
+import br.com.gomestg.libraryapi.service.BookService;
+import br.com.gomestg.libraryapi.service.CountStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The catalog split over three in-memory H2 databases: the default one as shard 0, and two
+ * more that get a copy of its schema, as migrations would give them.
+ */
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest(properties = {
+        "library.shards.enabled=true",
+        "library.shards.urls=jdbc:h2:mem:shard-1;DB_CLOSE_DELAY=-1,jdbc:h2:mem:shard-2;DB_CLOSE_DELAY=-1"
+})
+@Import(ShardingTest.ShardSchema.class)
+public class ShardingTest {
+
+    static final String INSERT = "insert into book (id, title, author, isbn, version) values (?, ?, 'Author', ?, 0)";
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    BookShards shards;
+
+    @Autowired
+    BookShardRebalancer rebalancer;
+
+    @Autowired
+    ShardRoutingDataSource routing;
+
+    List<JdbcTemplate> databases;
+
+    // deliberately unannotated: imported above, but never picked up by component scanning
+    static class ShardSchema {
+
+        /**
+         * Copies shard 0's schema, which JPA creates, to the other shards before the application
+         * reads from them.
+         */
+        @Bean
+        public SmartInitializingSingleton copyShardSchema(ShardRoutingDataSource routing, EntityManagerFactory entityManagerFactory) {
+            return () -> {
+                List<String> schema = new JdbcTemplate(routing.getShards().get(0)).queryForList("script nodata", String.class);
+                routing.getShards().subList(1, routing.getShards().size())
+                        .forEach(shard -> schema.forEach(new JdbcTemplate(shard)::execute));
+            };
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        databases = new ArrayList<>();
+        routing.getShards().forEach(shard -> databases.add(new JdbcTemplate(shard)));
+        databases.forEach(jdbc -> jdbc.update("delete from book"));
+    }
+
+    @Test
+    @DisplayName("keep each book on its ISBN's shard and gather pages from all of them")
+    public void spreadAndGatherTest() {
+        List<Book> saved = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            saved.add(service.save(Book.builder().title(String.format("Book %02d", i)).author("Author").isbn("ISBN-" + i).build()));
+        }
+
+        for (Book book : saved) {
+            int shard = shards.forIsbn(book.getIsbn());
+            assertThat(databases.get(shard).queryForObject("select isbn from book where id = ?", String.class, book.getId()))
+                    .isEqualTo(book.getIsbn());
+            assertThat(service.getById(book.getId())).contains(book);
+        }
+        assertThat(databases).allMatch(jdbc -> jdbc.queryForObject("select count(*) from book", Integer.class) > 0);
+        assertThat(service.getByIsbn("ISBN-7")).map(Book::getTitle).contains("Book 07");
+        assertThat(service.getAllByIsbn(Arrays.asList("ISBN-3", "none", "ISBN-20")))
+                .extracting(book -> book.map(Book::getTitle).orElse(null))
+                .containsExactly("Book 03", null, "Book 20");
+
+        Page<Book> page = service.find(new Book(), PageRequest.of(1, 7, Sort.by("title")));
+        assertThat(page.getContent()).extracting(Book::getTitle)
+                .containsExactly("Book 07", "Book 08", "Book 09", "Book 10", "Book 11", "Book 12", "Book 13");
+        assertThat(page.getTotalElements()).isEqualTo(30);
+        List<Long> sameAuthor = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            service.find(new Book(), PageRequest.of(i, 7, Sort.by("author"))).forEach(book -> sameAuthor.add(book.getId()));
+        }
+        assertThat(sameAuthor).doesNotHaveDuplicates().hasSize(30);
+
+        Slice<Book> titles = service.find(Book.builder().title("book 1").build(), Collections.singleton("title"),
+                PageRequest.of(0, 4, Sort.by(Sort.Order.desc("isbn"))), CountStrategy.NONE);
+        assertThat(titles.getContent()).extracting(Book::getTitle).containsExactly("Book 19", "Book 18", "Book 17", "Book 16");
+        assertThat(titles.getContent()).allMatch(book -> book.getIsbn() == null);
+        assertThat(titles.hasNext()).isTrue();
+
+        List<Long> ids = new ArrayList<>();
+        Slice<Book> chunk = service.findAfter(new Book(), null, 8);
+        chunk.forEach(book -> ids.add(book.getId()));
+        while (chunk.hasNext()) {
+            chunk = service.findAfter(new Book(), ids.get(ids.size() - 1), 8);
+            chunk.forEach(book -> ids.add(book.getId()));
+        }
+        List<Long> exported = new ArrayList<>();
+        service.export(book -> exported.add(book.getId()));
+        List<Long> expected = new ArrayList<>();
+        saved.forEach(book -> expected.add(book.getId()));
+        Collections.sort(expected);
+        assertThat(ids).isEqualTo(expected);
+        assertThat(exported).isEqualTo(expected);
+    }
+
+    @Test
+    @DisplayName("move books to their new shards when shards are added or retired")
+    public void rebalanceTest() {
+        DriverManagerDataSource retired = new DriverManagerDataSource("jdbc:h2:mem:shard-retired;DB_CLOSE_DELAY=-1");
+        JdbcTemplate old = new JdbcTemplate(retired);
+        old.execute("drop all objects");
+        databases.get(0).queryForList("script nodata", String.class).forEach(old::execute);
+        // laid out as two shards would have, with a third one retired since
+        int expectedMoves = 0;
+        for (int i = 0; i < 60; i++) {
+            String isbn = "MOVE-" + i;
+            int bucket = BookShards.bucket(isbn);
+            if (i % 10 == 0) {
+                old.update(INSERT, BookShards.id(i + 1, 2, bucket), "Moved " + i, isbn);
+                expectedMoves++;
+                if (i == 0) {
+                    // copied by an earlier run that was interrupted before deleting it
+                    databases.get(bucket % 3).update(INSERT, BookShards.id(i + 1, 2, bucket), "Stale " + i, isbn);
+                }
+            } else {
+                databases.get(bucket % 2).update(INSERT, BookShards.id(i + 1, bucket % 2, bucket), "Moved " + i, isbn);
+                expectedMoves += bucket % 2 == bucket % 3 ? 0 : 1;
+            }
+        }
+
+        long moved = rebalancer.rebalance(Collections.singletonList(retired));
+
+        assertThat(moved).isEqualTo(expectedMoves);
+        assertThat(old.queryForObject("select count(*) from book", Integer.class)).isZero();
+        HashSet<String> found = new HashSet<>();
+        for (int shard = 0; shard < databases.size(); shard++) {
+            for (String isbn : databases.get(shard).queryForList("select isbn from book", String.class)) {
+                assertThat(shards.forIsbn(isbn)).isEqualTo(shard);
+                assertThat(found.add(isbn)).isTrue();
+            }
+        }
+        assertThat(found).hasSize(60);
+        assertThat(service.getByIsbn("MOVE-30")).map(Book::getTitle).contains("Moved 30");
+        assertThat(service.getByIsbn("MOVE-0")).map(Book::getTitle).contains("Moved 0");
+        assertThat(rebalancer.rebalance()).isZero();
+    }
+
+    @Test
+    @DisplayName("refuse to rebalance books whose ids were given out before sharding")
+    public void legacyIdsTest() {
+        String isbn = "LEGACY-1";
+        long legacyId = BookShards.bucket(isbn) + 1;
+        databases.get(shards.forIsbn(isbn)).update(INSERT, legacyId, "Legacy", isbn);
+        databases.get(shards.forIsbn("MOVE-1")).update(INSERT, BookShards.id(1, 0, BookShards.bucket("MOVE-1")), "Sharded", "MOVE-1");
+
+        assertThatThrownBy(rebalancer::rebalance)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("1 on shard " + shards.forIsbn(isbn) + ", e.g. [" + legacyId + "]");
+        assertThatThrownBy(rebalancer::checkIds).isInstanceOf(IllegalStateException.class);
+        assertThat(databases.get(shards.forIsbn(isbn)).queryForObject("select count(*) from book where id = ?", Integer.class, legacyId))
+                .isOne();
+    }
+}
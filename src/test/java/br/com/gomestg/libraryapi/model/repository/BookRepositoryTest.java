@@ -1,18 +1,33 @@
 package br.com.gomestg.libraryapi.model.repository;
 
 import br.com.gomestg.libraryapi.model.entity.Book;
+import org.assertj.core.data.Percentage;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @ExtendWith(SpringExtension.class)
 @ActiveProfiles("test")
@@ -25,6 +40,9 @@ public class BookRepositoryTest {
     @Autowired
     BookRepository repository;
 
+    @Autowired
+    JdbcTemplate jdbc;
+
     @Test
     @DisplayName("is true when isbn exists")
     public void isTrueIsbnExistsTest() {
@@ -56,6 +74,146 @@ public class BookRepositoryTest {
         assertThat(foundBook.isPresent()).isTrue();
     }
 
+    @Test
+    @DisplayName("find book by isbn")
+    public void findByIsbnTest(){
+        Book book = createNewBook();
+        entityManager.persist(book);
+
+        Optional<Book> foundBook = repository.findByIsbn(book.getIsbn());
+
+        assertThat(foundBook.isPresent()).isTrue();
+        assertThat(foundBook.get().getId()).isEqualTo(book.getId());
+    }
+
+    @Test
+    @DisplayName("reject a duplicated isbn")
+    public void uniqueIsbnTest(){
+        entityManager.persistAndFlush(createNewBook());
+
+        assertThrows(DataIntegrityViolationException.class, () -> repository.saveAndFlush(createNewBook()));
+    }
+
+    @Test
+    @DisplayName("find registered isbns among a list")
+    public void findRegisteredIsbnsTest(){
+        entityManager.persist(createNewBook());
+
+        Set<String> registered = repository.findRegisteredIsbns(Arrays.asList("U1234", "U4321"));
+
+        assertThat(registered).containsExactly("U1234");
+    }
+
+    @Test
+    @DisplayName("find books after an id matching the filter")
+    public void findAfterTest(){
+        Book first = entityManager.persist(Book.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1").build());
+        Book second = entityManager.persist(Book.builder().title("Dr. No").author("Ian Fleming").isbn("U2").build());
+        entityManager.persist(Book.builder().title("Dune").author("Frank Herbert").isbn("U3").build());
+        Book fourth = entityManager.persist(Book.builder().title("Goldfinger").author("Ian Fleming").isbn("U4").build());
+
+        Slice<Book> firstPage = repository.findAfter(0l, null, "fleming", null, PageRequest.of(0, 2));
+        Slice<Book> secondPage = repository.findAfter(second.getId(), null, "fleming", null, PageRequest.of(0, 2));
+
+        assertThat(firstPage.getContent()).containsExactly(first, second);
+        assertThat(firstPage.hasNext()).isTrue();
+        assertThat(secondPage.getContent()).containsExactly(fourth);
+        assertThat(secondPage.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("stream every book in id order without attaching them")
+    public void streamAllTest(){
+        Book first = entityManager.persist(Book.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1").build());
+        Book second = entityManager.persist(Book.builder().title("Dr. No").author("Ian Fleming").isbn("U2").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        List<Book> books;
+        try (Stream<Book> stream = repository.streamAll()) {
+            books = stream.collect(Collectors.toList());
+        }
+
+        assertThat(books).extracting(Book::getId).containsExactly(first.getId(), second.getId());
+        assertThat(books.get(1).getTitle()).isEqualTo("Dr. No");
+        assertThat(entityManager.getEntityManager().contains(books.get(0))).isFalse();
+    }
+
+    @Test
+    @DisplayName("find projected books matching the filter")
+    public void findProjectedTest(){
+        entityManager.persist(Book.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1").build());
+        entityManager.persist(Book.builder().title("Dr. No").author("Ian Fleming").isbn("U2").build());
+        entityManager.persist(Book.builder().title("Dune").author("Frank Herbert").isbn("U3").build());
+        entityManager.persist(Book.builder().title("100% Fleming").author("Nobody").isbn("U4").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Page<Book> page = repository.findProjected(Book.builder().author("FLEMING").build(),
+                new HashSet<>(Arrays.asList("title", "isbn")),
+                PageRequest.of(0, 1, Sort.by("title").descending()));
+
+        assertThat(page.getTotalElements()).isEqualTo(2);
+        assertThat(page.getContent()).hasSize(1);
+        Book book = page.getContent().get(0);
+        assertThat(book.getTitle()).isEqualTo("Dr. No");
+        assertThat(book.getIsbn()).isEqualTo("U2");
+        assertThat(book.getId()).isNull();
+        assertThat(book.getAuthor()).isNull();
+        assertThat(entityManager.getEntityManager().contains(book)).isFalse();
+
+        Page<Book> escaped = repository.findProjected(Book.builder().title("0%").build(),
+                new HashSet<>(Arrays.asList("id", "title")), PageRequest.of(0, 10));
+        assertThat(escaped.getContent()).extracting(Book::getTitle).containsExactly("100% Fleming");
+    }
+
+    @Test
+    @DisplayName("find a slice of projected books without counting")
+    public void findProjectedSliceTest(){
+        entityManager.persist(Book.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1").build());
+        entityManager.persist(Book.builder().title("Dr. No").author("Ian Fleming").isbn("U2").build());
+        entityManager.persist(Book.builder().title("Dune").author("Frank Herbert").isbn("U3").build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Set<String> fields = new HashSet<>(Arrays.asList("id", "title"));
+        Slice<Book> first = repository.findProjectedSlice(Book.builder().author("fleming").build(), fields,
+                PageRequest.of(0, 1, Sort.by("title")));
+        Slice<Book> second = repository.findProjectedSlice(Book.builder().author("fleming").build(), fields,
+                PageRequest.of(1, 1, Sort.by("title")));
+
+        assertThat(first.getContent()).extracting(Book::getTitle).containsExactly("Cassino Royale");
+        assertThat(first.hasNext()).isTrue();
+        assertThat(second.getContent()).extracting(Book::getTitle).containsExactly("Dr. No");
+        assertThat(second.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("estimate how many books match the filter")
+    public void estimateCountTest(){
+        entityManager.persist(Book.builder().title("Cassino Royale").author("Ian Fleming").isbn("U1").build());
+        entityManager.persist(Book.builder().title("Dr. No").author("Ian Fleming").isbn("U2").build());
+        entityManager.persist(Book.builder().title("Dune").author("Frank Herbert").isbn("U3").build());
+        entityManager.flush();
+
+        assertThat(repository.estimateCount(new Book())).isEqualTo(3);
+        assertThat(repository.estimateCount(Book.builder().author("fleming").build())).isEqualTo(2);
+        assertThat(repository.countMatching(Book.builder().author("herbert").build())).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("estimate from a sample of the whole table, not only its oldest books")
+    public void estimateCountSampleTest(){
+        List<Object[]> books = new ArrayList<>();
+        for (long id = 1; id <= 4 * BookRepositoryImpl.ESTIMATE_SAMPLE_SIZE; id++) {
+            books.add(new Object[]{id, "Title " + id, id <= 2 * BookRepositoryImpl.ESTIMATE_SAMPLE_SIZE ? "Old" : "New", "S" + id});
+        }
+        jdbc.batchUpdate("insert into book (id, title, author, isbn, version) values (?, ?, ?, ?, 0)", books);
+
+        assertThat(repository.estimateCount(Book.builder().author("new").build()))
+                .isCloseTo(2 * BookRepositoryImpl.ESTIMATE_SAMPLE_SIZE, Percentage.withPercentage(10));
+    }
+
     @Test
     @DisplayName("save a book")
     public void saveBookTest(){
@@ -76,7 +234,41 @@ public class BookRepositoryTest {
         repository.delete(foundBook);
 
         Book deletedBook = entityManager.find(Book.class, book.getId());
-        assertThat(deletedBook).isNotNull();
+        assertThat(deletedBook).isNull();
+    }
+
+    @Test
+    @DisplayName("delete a book by id and version")
+    public void deleteByIdAndVersionTest(){
+        Book book = entityManager.persistAndFlush(createNewBook());
+
+        int stale = repository.deleteByIdAndVersion(book.getId(), book.getVersion() + 1);
+        int deleted = repository.deleteByIdAndVersion(book.getId(), book.getVersion());
+
+        assertThat(stale).isZero();
+        assertThat(deleted).isOne();
+        assertThat(entityManager.find(Book.class, book.getId())).isNull();
+    }
+
+    @Test
+    @DisplayName("update title and author by id")
+    public void updateTitleAndAuthorTest(){
+        Book book = entityManager.persistAndFlush(createNewBook());
+
+        int updated = repository.updateTitleAndAuthor(book.getId(), "Dr. No", "Fleming", null);
+
+        Book updatedBook = entityManager.find(Book.class, book.getId());
+        assertThat(updated).isOne();
+        assertThat(updatedBook.getTitle()).isEqualTo("Dr. No");
+        assertThat(updatedBook.getAuthor()).isEqualTo("Fleming");
+        assertThat(updatedBook.getIsbn()).isEqualTo("U1234");
+        assertThat(updatedBook.getVersion()).isEqualTo(book.getVersion() + 1);
+    }
+
+    @Test
+    @DisplayName("update nothing for a missing book")
+    public void updateMissingBookTest(){
+        assertThat(repository.updateTitleAndAuthor(99l, "Dr. No", "Fleming", null)).isZero();
     }
 
     private Book createNewBook() {
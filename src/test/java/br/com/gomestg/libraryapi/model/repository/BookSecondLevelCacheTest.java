@@ -0,0 +1,134 @@
+package br.com.gomestg.libraryapi.model.repository;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.BookService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import javax.persistence.EntityManagerFactory;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookSecondLevelCacheTest {
+
+    @Autowired
+    BookRepository repository;
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MeterRegistry registry;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @Test
+    @DisplayName("load a book from the second-level cache without a statement")
+    public void entityCacheTest() {
+        Long id = repository.saveAndFlush(createNewBook("U1234")).getId();
+        double hits = gets("book", "hit");
+        double statements = statements();
+
+        assertThat(repository.findById(id)).isPresent();
+
+        assertThat(gets("book", "hit")).isEqualTo(hits + 1);
+        assertThat(statements()).isEqualTo(statements);
+    }
+
+    @Test
+    @DisplayName("count second-level cache misses and hits in the cache meters with the shipped settings")
+    public void cacheMetersTest() {
+        Long id = repository.saveAndFlush(createNewBook("U1234")).getId();
+        entityManagerFactory.getCache().evictAll();
+        double hits = gets("book", "hit");
+        double misses = gets("book", "miss");
+
+        repository.findById(id);
+        repository.findById(id);
+
+        // two misses for one load: READ_WRITE looks the entry up again before putting what it loaded
+        assertThat(gets("book", "miss")).isEqualTo(misses + 2);
+        assertThat(gets("book", "hit")).isEqualTo(hits + 1);
+    }
+
+    @Test
+    @DisplayName("answer a repeated example query and its count from the query cache")
+    public void queryCacheTest() {
+        repository.saveAndFlush(createNewBook("U1234"));
+        repository.saveAndFlush(createNewBook("U4321"));
+
+        Page<Book> first = repository.findAll(byTitle("royale"), PageRequest.of(0, 1));
+        double hits = gets("default-query-results-region", "hit");
+        double statements = statements();
+        Page<Book> second = repository.findAll(byTitle("royale"), PageRequest.of(0, 1));
+
+        assertThat(second.getTotalElements()).isEqualTo(first.getTotalElements()).isEqualTo(2);
+        assertThat(gets("default-query-results-region", "hit")).isEqualTo(hits + 2);
+        assertThat(statements()).isEqualTo(statements);
+    }
+
+    @Test
+    @DisplayName("invalidate cached books and queries on every write path")
+    public void writeInvalidationTest() {
+        Book book = service.save(createNewBook("U1234"));
+        assertThat(repository.existsByIsbn("U1234")).isTrue();
+        assertThat(repository.findAll(byTitle("royale"), PageRequest.of(0, 10)).getTotalElements()).isEqualTo(1);
+
+        service.updateById(book.getId(), Book.builder().title("Dr. No").author("Ian Fleming").build(), null);
+
+        assertThat(repository.findById(book.getId()).get().getTitle()).isEqualTo("Dr. No");
+        assertThat(repository.findAll(byTitle("royale"), PageRequest.of(0, 10)).getTotalElements()).isZero();
+
+        book = repository.findById(book.getId()).get();
+        book.setTitle("Goldfinger");
+        service.update(book);
+
+        assertThat(repository.findByIsbn("U1234").get().getTitle()).isEqualTo("Goldfinger");
+
+        service.deleteById(book.getId(), null);
+
+        assertThat(repository.existsByIsbn("U1234")).isFalse();
+        assertThat(repository.findById(book.getId())).isEmpty();
+    }
+
+    private double gets(String region, String result) {
+        return registry.get("cache.gets").tag("cacheManager", "hibernate").tag("cache", region).tag("result", result)
+                .functionCounter().count();
+    }
+
+    private double statements() {
+        return registry.find("library.repository.statements").counters().stream().mapToDouble(Counter::count).sum();
+    }
+
+    private static Example<Book> byTitle(String title) {
+        return Example.of(Book.builder().title(title).build(),
+                ExampleMatcher.matching().withIgnoreCase().withIgnoreNullValues()
+                        .withStringMatcher(ExampleMatcher.StringMatcher.CONTAINING));
+    }
+
+    private Book createNewBook(String isbn) {
+        return Book.builder().title("Cassino Royale").author("Ian Fleming").isbn(isbn).build();
+    }
+}
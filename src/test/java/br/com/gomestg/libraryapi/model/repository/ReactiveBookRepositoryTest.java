@@ -0,0 +1,113 @@
+package br.com.gomestg.libraryapi.model.repository;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.core.AutoConfigureCache;
+import org.springframework.boot.test.autoconfigure.data.r2dbc.DataR2dbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("reactive")
+@AutoConfigureCache
+@DataR2dbcTest(properties = "spring.main.web-application-type=none")
+@Import(ReactiveBookRepository.class)
+public class ReactiveBookRepositoryTest {
+
+    @Autowired
+    DatabaseClient client;
+
+    @Autowired
+    ReactiveBookRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        client.sql("delete from book").then().block();
+    }
+
+    @Test
+    @DisplayName("insert a book and find it by id")
+    public void insertAndFindByIdTest() {
+        Book saved = repository.insert(createNewBook("U1234")).block();
+
+        assertThat(saved.getId()).isNotNull();
+        assertThat(saved.getVersion()).isZero();
+        StepVerifier.create(repository.findById(saved.getId()))
+                .expectNext(saved)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("refuse a duplicated isbn")
+    public void duplicatedIsbnTest() {
+        repository.insert(createNewBook("U1234")).block();
+
+        StepVerifier.create(repository.insert(createNewBook("U1234")))
+                .expectError(DataIntegrityViolationException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("update and delete only while the version matches")
+    public void versionedUpdateAndDeleteTest() {
+        Long id = repository.insert(createNewBook("U1234")).block().getId();
+
+        StepVerifier.create(repository.updateTitleAndAuthor(id, "Casino Royale", "Ian Fleming", 1l)).expectNext(0).verifyComplete();
+        StepVerifier.create(repository.updateTitleAndAuthor(id, "Casino Royale", "Ian Fleming", 0l)).expectNext(1).verifyComplete();
+        StepVerifier.create(repository.findById(id))
+                .expectNextMatches(book -> book.getTitle().equals("Casino Royale") && book.getVersion() == 1)
+                .verifyComplete();
+
+        StepVerifier.create(repository.deleteByIdAndVersion(id, 0l)).expectNext(0).verifyComplete();
+        StepVerifier.create(repository.deleteByIdAndVersion(id, null)).expectNext(1).verifyComplete();
+        StepVerifier.create(repository.findById(id)).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("filter by contained, escaped values with sorting, paging and count")
+    public void findTest() {
+        repository.insert(Book.builder().title("100% Fleming").author("Ian Fleming").isbn("A1").build()).block();
+        repository.insert(Book.builder().title("Dr. No").author("Ian Fleming").isbn("A2").build()).block();
+        repository.insert(Book.builder().title("Emma").author("Jane Austen").isbn("A3").build()).block();
+        Book byAuthor = Book.builder().author("FLEMING").build();
+
+        StepVerifier.create(repository.find(byAuthor, PageRequest.of(0, 1, Sort.by(Sort.Direction.DESC, "title"))))
+                .expectNextMatches(book -> book.getTitle().equals("Dr. No"))
+                .verifyComplete();
+        StepVerifier.create(repository.count(byAuthor)).expectNext(2l).verifyComplete();
+        StepVerifier.create(repository.find(Book.builder().title("0%").build(), PageRequest.of(0, 10)))
+                .expectNextMatches(book -> book.getIsbn().equals("A1"))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("page by id after a key")
+    public void findAfterTest() {
+        Book first = repository.insert(createNewBook("A1")).block();
+        Book second = repository.insert(createNewBook("A2")).block();
+        Book third = repository.insert(createNewBook("A3")).block();
+
+        StepVerifier.create(repository.findAfter(new Book(), first.getId(), 1))
+                .expectNext(second)
+                .verifyComplete();
+        StepVerifier.create(repository.findAfter(Book.builder().isbn("a3").build(), 0l, 10))
+                .expectNext(third)
+                .verifyComplete();
+    }
+
+    private Book createNewBook(String isbn) {
+        return Book.builder().title("Cassino Royale").author("Ian Fleming").isbn(isbn).build();
+    }
+}
@@ -0,0 +1,92 @@
+package br.com.gomestg.libraryapi.model.shard;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BookShardsTest {
+
+    BookShards shards;
+
+    @AfterEach
+    public void tearDown() {
+        if (shards != null) {
+            shards.close();
+        }
+    }
+
+    @Test
+    @DisplayName("keep a book's bucket and allocating shard in its id")
+    public void idLayoutTest() {
+        int bucket = BookShards.bucket("978-0141439518");
+        long id = BookShards.id(12345, 7, bucket);
+
+        assertThat(BookShards.bucket(id)).isEqualTo(bucket);
+        assertThat(id >>> 16).isEqualTo(12345);
+        assertThat((id >>> 10) & 63).isEqualTo(7);
+        assertThat(BookShards.bucket("978-0141439518")).isEqualTo(bucket).isBetween(0, BookShards.BUCKETS - 1);
+    }
+
+    @Test
+    @DisplayName("place a book's id and ISBN on the same shard, taking ids from that shard's sequence")
+    public void assignIdTest() {
+        List<DataSource> dataSources = Arrays.asList(database("shards-a"), database("shards-b"), database("shards-c"));
+        shards = new BookShards(dataSources);
+        Book book = Book.builder().isbn("123").build();
+
+        int shard = shards.forIsbn(book.getIsbn());
+        Long first = shards.assignId(shard, book).getId();
+        Long second = shards.assignId(shard, Book.builder().isbn("123").build()).getId();
+
+        assertThat(shards.forId(first)).isEqualTo(shard);
+        assertThat(second).isGreaterThan(first);
+        assertThat(first >>> 16).isEqualTo(1);
+        // one block taken for both
+        assertThat(new JdbcTemplate(dataSources.get(shard)).queryForObject("select next value for book_seq", Long.class))
+                .isEqualTo(1 + Book.ID_ALLOCATION_SIZE);
+    }
+
+    @Test
+    @DisplayName("run shard work on threads bound to the shard, rethrowing its failures")
+    public void onEachTest() {
+        shards = new BookShards(Arrays.asList(database("shards-a"), database("shards-b")));
+
+        List<Integer> bound = shards.onEach(Arrays.asList(1, 0), shard -> BookShards.currentShard());
+
+        assertThat(bound).containsExactly(1, 0);
+        assertThat(BookShards.currentShard()).isNull();
+        assertThatThrownBy(() -> shards.on(0, () -> {
+            throw new IllegalStateException("Shard is down");
+        })).isInstanceOf(IllegalStateException.class).hasMessage("Shard is down");
+    }
+
+    @Test
+    @DisplayName("leave ids to Hibernate and run everything in place when not sharded")
+    public void singleTest() {
+        BookShards single = BookShards.single();
+        Book book = Book.builder().isbn("123").build();
+
+        assertThat(single.assignId(0, book).getId()).isNull();
+        assertThat(single.forIsbn("123")).isZero();
+        assertThat(single.on(0, BookShards::currentShard)).isNull();
+        assertThat(single.onAll(shard -> Thread.currentThread())).containsExactly(Thread.currentThread());
+    }
+
+    private static DataSource database(String name) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("drop sequence if exists book_seq");
+        jdbc.execute("create sequence book_seq start with 1 increment by " + Book.ID_ALLOCATION_SIZE);
+        return dataSource;
+    }
+}
@@ -0,0 +1,69 @@
+package br.com.gomestg.libraryapi.model.shard;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ShardedPagesTest {
+
+    @Test
+    @DisplayName("merge sorted shard results into the requested page")
+    public void mergeTest() {
+        List<List<Book>> sorted = Arrays.asList(
+                Arrays.asList(book(1l, "a"), book(4l, "d"), book(5l, "e")),
+                Collections.emptyList(),
+                Arrays.asList(book(2l, "b"), book(3l, "c"), book(6l, "f")));
+
+        List<Book> page = ShardedPages.merge(sorted, ShardedPages.comparator(Sort.by("title")), 2, 3);
+
+        assertThat(page).extracting(Book::getTitle).containsExactly("c", "d", "e");
+    }
+
+    @Test
+    @DisplayName("order as the database does: descending, ignoring case, nulls lowest")
+    public void comparatorTest() {
+        List<Book> books = Arrays.asList(book(1l, "b"), book(2l, null), book(3l, "C"), book(4l, "a"));
+
+        books.sort(ShardedPages.comparator(Sort.by(Sort.Order.desc("title").ignoreCase())));
+        assertThat(books).extracting(Book::getId).containsExactly(3l, 1l, 4l, 2l);
+        books.sort(ShardedPages.comparator(Sort.by("title")));
+        assertThat(books).extracting(Book::getId).containsExactly(2l, 3l, 4l, 1l);
+        books.sort(ShardedPages.comparator(Sort.by(Sort.Order.asc("title").nullsLast())));
+        assertThat(books).extracting(Book::getId).containsExactly(3l, 4l, 1l, 2l);
+    }
+
+    @Test
+    @DisplayName("break ties by id, so equal books keep their place across pages")
+    public void tieBreakTest() {
+        List<List<Book>> sorted = Arrays.asList(
+                Arrays.asList(book(2l, "a"), book(5l, "a"), book(6l, "b")),
+                Arrays.asList(book(1l, "a"), book(3l, "a"), book(4l, "a")));
+        List<Book> pages = new ArrayList<>();
+        for (int page = 0; page < 3; page++) {
+            pages.addAll(ShardedPages.merge(sorted, ShardedPages.comparator(Sort.by("title")), page * 2, 2));
+        }
+
+        assertThat(pages).extracting(Book::getId).containsExactly(1l, 2l, 3l, 4l, 5l, 6l);
+    }
+
+    @Test
+    @DisplayName("drop fields read only to merge")
+    public void onlyTest() {
+        Book book = ShardedPages.only(Book.builder().id(1l).title("a").author("b").isbn("c").version(0l).build(),
+                Collections.singleton("title"));
+
+        assertThat(book).isEqualTo(Book.builder().title("a").build());
+    }
+
+    private static Book book(Long id, String title) {
+        return Book.builder().id(id).title(title).build();
+    }
+}
@@ -0,0 +1,113 @@
+package br.com.gomestg.libraryapi.service;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ExtendWith(SpringExtension.class)
+@ActiveProfiles("test")
+@SpringBootTest
+public class BookServiceCacheTest {
+
+    @Autowired
+    BookService service;
+
+    @Autowired
+    CacheManager cacheManager;
+
+    @SpyBean
+    BookRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        repository.deleteAll();
+        cacheManager.getCache("books").clear();
+    }
+
+    @Test
+    @DisplayName("read a book once and serve it from the cache")
+    public void cachedGetByIdTest() {
+        Book book = service.save(createNewBook());
+
+        Optional<Book> first = service.getById(book.getId());
+        Optional<Book> second = service.getById(book.getId());
+
+        assertThat(first.get().getIsbn()).isEqualTo("U1234");
+        assertThat(second.get().getIsbn()).isEqualTo("U1234");
+        Mockito.verify(repository, Mockito.never()).findById(book.getId());
+    }
+
+    @Test
+    @DisplayName("do not cache missing books")
+    public void missingBookTest() {
+        assertThat(service.getById(99l).isPresent()).isFalse();
+        assertThat(service.getById(99l).isPresent()).isFalse();
+
+        Mockito.verify(repository, Mockito.times(2)).findById(99l);
+    }
+
+    @Test
+    @DisplayName("refresh on update and evict on delete")
+    public void writeInvalidationTest() {
+        Book book = service.save(createNewBook());
+        book.setTitle("Dr. No");
+        book = service.update(book);
+
+        assertThat(service.getById(book.getId()).get().getTitle()).isEqualTo("Dr. No");
+
+        service.delete(book);
+
+        assertThat(service.getById(book.getId()).isPresent()).isFalse();
+        Mockito.verify(repository, Mockito.times(1)).findById(book.getId());
+    }
+
+    @Test
+    @DisplayName("do not cache a book read before a concurrent update")
+    public void concurrentUpdateTest() throws Exception {
+        Book book = service.save(createNewBook());
+        Long id = book.getId();
+        cacheManager.getCache("books").clear();
+        CountDownLatch read = new CountDownLatch(1);
+        CountDownLatch updated = new CountDownLatch(1);
+        // the row as read before the update commits, handed back only after it has been evicted
+        Mockito.doAnswer(invocation -> {
+            read.countDown();
+            updated.await(5, TimeUnit.SECONDS);
+            return Optional.of(book);
+        }).when(repository).findById(id);
+
+        CompletableFuture<Optional<Book>> stale = CompletableFuture.supplyAsync(() -> service.getById(id));
+        assertThat(read.await(5, TimeUnit.SECONDS)).isTrue();
+        service.updateById(id, Book.builder().title("Dr. No").author("Ian Fleming").build(), null);
+        updated.countDown();
+
+        assertThat(stale.get(5, TimeUnit.SECONDS).get().getTitle()).isEqualTo("Cassino Royale");
+        Mockito.reset(repository);
+        assertThat(service.getById(id).get().getTitle()).isEqualTo("Dr. No");
+    }
+
+    private Book createNewBook() {
+        return Book.builder()
+                .title("Cassino Royale")
+                .author("Ian Fleming")
+                .isbn("U1234")
+                .build();
+    }
+}
@@ -3,7 +3,9 @@ package br.com.gomestg.libraryapi.service;
 import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
 import br.com.gomestg.libraryapi.model.entity.Book;
 import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import br.com.gomestg.libraryapi.model.shard.BookShards;
 import br.com.gomestg.libraryapi.service.impl.BookServiceImpl;
+import br.com.gomestg.libraryapi.service.search.BookSearchIndex;
 import org.assertj.core.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -11,15 +13,32 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mockito;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Example;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 
+import java.time.Duration;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
@@ -30,13 +49,15 @@ import static org.junit.jupiter.api.Assertions.assertThrows;
 public class BookServiceTest {
 
     BookService service;
+    BookSearchIndex searchIndex;
 
     @MockBean
     BookRepository repository;
 
     @BeforeEach
     public void setUp() {
-        this.service = new BookServiceImpl(repository);
+        this.searchIndex = new BookSearchIndex(repository);
+        this.service = new BookServiceImpl(repository, searchIndex);
     }
 
     @Test
@@ -44,8 +65,7 @@ public class BookServiceTest {
     public void saveBookTest() {
         Book book = createValidBook();
 
-        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(false);
-        Mockito.when(repository.save(book))
+        Mockito.when(repository.saveAndFlush(book))
                 .thenReturn(Book.builder()
                         .id(10l)
                         .isbn("U1234")
@@ -59,13 +79,14 @@ public class BookServiceTest {
         assertThat(savedBook.getIsbn()).isEqualTo("U1234");
         assertThat(savedBook.getAuthor()).isEqualTo("Ian Fleming");
         assertThat(savedBook.getTitle()).isEqualTo("Cassino Royale");
+        assertThat(searchIndex.search("royale")).containsExactly(10l);
     }
 
     @Test
     @DisplayName("error business: create book with isbn duplicated")
     public void shouldNotSaveABookWithDuplicatedIsbnTest() {
         Book book = createValidBook();
-        Mockito.when(repository.existsByIsbn(Mockito.anyString())).thenReturn(true);
+        Mockito.when(repository.saveAndFlush(book)).thenThrow(new DataIntegrityViolationException("ux_book_isbn"));
 
         Throwable exception = Assertions.catchThrowable(() -> service.save(book));
 
@@ -73,7 +94,40 @@ public class BookServiceTest {
                 .isInstanceOf(LibraryBusinessException.class)
                 .hasMessage("Isbn already registered");
 
-        Mockito.verify(repository, Mockito.never()).save(book);
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("save books in batch skipping registered and repeated isbns")
+    public void saveAllTest() {
+        Book registered = Book.builder().id(1l).isbn("U1").build();
+        Book first = Book.builder().id(2l).isbn("U2").build();
+        Book repeated = Book.builder().id(3l).isbn("U2").build();
+        Mockito.when(repository.findRegisteredIsbns(Mockito.anyCollection())).thenReturn(Collections.singleton("U1"));
+        Mockito.when(repository.saveAllAndFlush(Mockito.anyList())).then(invocation -> invocation.getArgument(0));
+
+        List<Book> saved = service.saveAll(Arrays.asList(registered, first, repeated));
+
+        assertThat(saved).containsExactly(first);
+        Mockito.verify(repository, Mockito.never()).existsByIsbn(Mockito.anyString());
+    }
+
+    @Test
+    @DisplayName("save books one by one when an isbn is registered concurrently")
+    public void saveAllConcurrentIsbnTest() {
+        Book first = Book.builder().id(1l).isbn("U1").build();
+        Book second = Book.builder().id(2l).isbn("U2").build();
+        Mockito.when(repository.findRegisteredIsbns(Mockito.anyCollection())).thenReturn(Collections.emptySet());
+        Mockito.when(repository.saveAllAndFlush(Mockito.anyList())).thenThrow(new DataIntegrityViolationException("ux_book_isbn"));
+        Mockito.when(repository.saveAndFlush(first)).thenThrow(new DataIntegrityViolationException("ux_book_isbn"));
+        Mockito.when(repository.saveAndFlush(second)).then(invocation -> {
+            second.setId(20l);
+            return second;
+        });
+
+        List<Book> saved = service.saveAll(Arrays.asList(first, second));
+
+        assertThat(saved).containsExactly(second);
     }
 
     @Test
@@ -104,16 +158,94 @@ public class BookServiceTest {
         assertThat(foundBook.isPresent()).isFalse();
     }
 
+    @Test
+    @DisplayName("find book by isbn")
+    public void getByIsbnTest() {
+        Book book = createValidBook();
+        book.setId(10l);
+        Mockito.when(repository.findByIsbn("U1234")).thenReturn(Optional.of(book));
+
+        Optional<Book> foundBook = service.getByIsbn("U1234");
+
+        assertThat(foundBook.isPresent()).isTrue();
+        assertThat(foundBook.get().getId()).isEqualTo(10l);
+        assertThat(foundBook.get().getIsbn()).isEqualTo("U1234");
+    }
+
+    @Test
+    @DisplayName("find books by id in request order, in chunks, with misses")
+    public void getAllByIdTest() {
+        List<Long> ids = new ArrayList<>();
+        for (long id = 1; id <= 600; id++) {
+            ids.add(id);
+        }
+        ids.add(0, 7l);
+        Mockito.when(repository.findAllById(Mockito.anyList())).thenAnswer(invocation -> {
+            List<Book> found = new ArrayList<>();
+            for (Long id : invocation.<List<Long>>getArgument(0)) {
+                if (id % 2 == 1) {
+                    found.add(Book.builder().id(id).build());
+                }
+            }
+            return found;
+        });
+
+        List<Optional<Book>> books = service.getAllById(ids);
+
+        assertThat(books).hasSize(601);
+        assertThat(books.get(0)).hasValueSatisfying(book -> assertThat(book.getId()).isEqualTo(7l));
+        assertThat(books.get(1)).hasValueSatisfying(book -> assertThat(book.getId()).isEqualTo(1l));
+        assertThat(books.get(2)).isEmpty();
+        assertThat(books.stream().filter(Optional::isPresent).count()).isEqualTo(301);
+        Mockito.verify(repository, Mockito.times(2)).findAllById(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("find books by isbn in request order")
+    public void getAllByIsbnTest() {
+        Book book = createValidBook();
+        book.setId(10l);
+        Mockito.when(repository.findByIsbnIn(Arrays.asList("U0000", "U1234"))).thenReturn(Collections.singletonList(book));
+
+        List<Optional<Book>> books = service.getAllByIsbn(Arrays.asList("U0000", "U1234", "U0000"));
+
+        assertThat(books).hasSize(3);
+        assertThat(books.get(0)).isEmpty();
+        assertThat(books.get(1)).contains(book);
+        assertThat(books.get(2)).isEmpty();
+    }
+
     @Test
     @DisplayName("delete a book")
     public void deleteBookTest() {
-        Book book = Book.builder().id(10l).build();
+        Book book = Book.builder().id(10l).title("Cassino Royale").build();
+        searchIndex.index(book);
 
         assertDoesNotThrow(() -> service.delete(book));
+        assertThat(searchIndex.search("royale")).isEmpty();
 
         Mockito.verify(repository, Mockito.times(1)).delete(book);
     }
 
+    @Test
+    @DisplayName("delete a book by id")
+    public void deleteByIdTest() {
+        searchIndex.index(Book.builder().id(10l).title("Cassino Royale").build());
+        Mockito.when(repository.deleteByIdAndVersion(10l, 2l)).thenReturn(1);
+
+        assertThat(service.deleteById(10l, 2l)).isTrue();
+        assertThat(searchIndex.search("royale")).isEmpty();
+        Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("delete a missing book by id")
+    public void deleteMissingByIdTest() {
+        Mockito.when(repository.deleteByIdAndVersion(10l, null)).thenReturn(0);
+
+        assertThat(service.deleteById(10l, null)).isFalse();
+    }
+
     @Test
     @DisplayName("delete invalid book")
     public void deleteInvalidBookTest() {
@@ -140,6 +272,26 @@ public class BookServiceTest {
         assertThat(book.getAuthor()).isEqualTo(updatedBook.getAuthor());
         assertThat(book.getTitle()).isEqualTo(updatedBook.getTitle());
         assertThat(book.getIsbn()).isEqualTo(updatedBook.getIsbn());
+        assertThat(searchIndex.search("fleming")).containsExactly(id);
+    }
+
+    @Test
+    @DisplayName("update a book by id")
+    public void updateByIdTest() {
+        Book changes = Book.builder().title("Dr. No").author("Ian Fleming").build();
+        Mockito.when(repository.updateTitleAndAuthor(10l, "Dr. No", "Ian Fleming", null)).thenReturn(1);
+
+        assertThat(service.updateById(10l, changes, null)).isTrue();
+        assertThat(searchIndex.search("dr no")).containsExactly(10l);
+        Mockito.verify(repository, Mockito.never()).findById(Mockito.anyLong());
+    }
+
+    @Test
+    @DisplayName("update a missing or stale book by id")
+    public void updateMissingByIdTest() {
+        Mockito.when(repository.updateTitleAndAuthor(10l, "Dr. No", "Ian Fleming", 1l)).thenReturn(0);
+
+        assertThat(service.updateById(10l, Book.builder().title("Dr. No").author("Ian Fleming").build(), 1l)).isFalse();
     }
 
     @Test
@@ -168,6 +320,171 @@ public class BookServiceTest {
         assertThat(result.getPageable().getPageSize()).isEqualTo(10);
     }
 
+    @Test
+    @DisplayName("find books after an id")
+    public void findBooksAfterTest() {
+        Book book = createValidBook();
+        Slice<Book> slice = new SliceImpl<Book>(Arrays.asList(book), PageRequest.of(0, 10), false);
+        Mockito.when(repository.findAfter(0l, "Cassino Royale", null, null, PageRequest.of(0, 10))).thenReturn(slice);
+
+        Slice<Book> result = service.findAfter(Book.builder().title("Cassino Royale").build(), null, 10);
+
+        assertThat(result.getContent()).containsExactly(book);
+        assertThat(result.hasNext()).isFalse();
+    }
+
+    @Test
+    @DisplayName("search books keeping the index ranking")
+    public void searchTest() {
+        Book cassino = Book.builder().id(1l).title("Cassino Royale").author("Ian Fleming").isbn("U1").build();
+        Book flemish = Book.builder().id(2l).title("Flemish Painters").author("Joana Alvares").isbn("U2").build();
+        searchIndex.index(cassino);
+        searchIndex.index(flemish);
+        Mockito.when(repository.findAllById(Arrays.asList(2l, 1l))).thenReturn(Arrays.asList(cassino, flemish));
+
+        Page<Book> result = service.search("flem", PageRequest.of(0, 10));
+
+        assertThat(result.getContent()).containsExactly(flemish, cassino);
+        assertThat(result.getTotalElements()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("export every book")
+    public void exportTest() {
+        Book first = Book.builder().id(1l).build();
+        Book second = Book.builder().id(2l).build();
+        Mockito.when(repository.streamAll()).thenReturn(Stream.of(first, second));
+
+        List<Book> exported = new ArrayList<>();
+        service.export(exported::add);
+
+        assertThat(exported).containsExactly(first, second);
+    }
+
+    @Test
+    @DisplayName("find projected books by properties")
+    public void findProjectedBooksTest() {
+        Book book = createValidBook();
+        Set<String> fields = new HashSet<>(Arrays.asList("id", "title"));
+        PageRequest pageRequest = PageRequest.of(0, 10);
+        Page<Book> page = new PageImpl<Book>(Arrays.asList(book), pageRequest, 1);
+        Mockito.when(repository.findProjected(book, fields, pageRequest)).thenReturn(page);
+
+        Slice<Book> result = service.find(book, fields, pageRequest, CountStrategy.EXACT);
+
+        assertThat(result).isSameAs(page);
+        Mockito.verify(repository, Mockito.never()).findAll(Mockito.any(Example.class), Mockito.any(Pageable.class));
+    }
+
+    @Test
+    @DisplayName("find projected books reusing a cached total")
+    public void findProjectedBooksCachedCountTest() {
+        Book book = createValidBook();
+        Set<String> fields = new HashSet<>(Arrays.asList("id", "title"));
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        Mockito.when(repository.countMatching(book)).thenReturn(42l);
+        Mockito.when(repository.findProjected(Mockito.eq(book), Mockito.eq(fields), Mockito.eq(pageRequest), Mockito.any()))
+                .thenAnswer(invocation -> new PageImpl<Book>(Arrays.asList(book), pageRequest,
+                        invocation.<LongSupplier>getArgument(3).getAsLong()));
+
+        Slice<Book> first = service.find(book, fields, pageRequest, CountStrategy.CACHED);
+        Slice<Book> second = service.find(createValidBook(), fields, pageRequest, CountStrategy.CACHED);
+
+        assertThat(((Page<Book>) first).getTotalElements()).isEqualTo(42);
+        assertThat(((Page<Book>) second).getTotalElements()).isEqualTo(42);
+        Mockito.verify(repository, Mockito.times(1)).countMatching(book);
+    }
+
+    @Test
+    @DisplayName("find projected books with an estimated total")
+    public void findProjectedBooksEstimatedCountTest() {
+        Book book = createValidBook();
+        Set<String> fields = new HashSet<>(Arrays.asList("id", "title"));
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        Mockito.when(repository.estimateCount(book)).thenReturn(5000l);
+        Mockito.when(repository.findProjected(Mockito.eq(book), Mockito.eq(fields), Mockito.eq(pageRequest), Mockito.any()))
+                .thenAnswer(invocation -> new PageImpl<Book>(Arrays.asList(book), pageRequest,
+                        invocation.<LongSupplier>getArgument(3).getAsLong()));
+
+        Slice<Book> result = service.find(book, fields, pageRequest, CountStrategy.ESTIMATED);
+
+        assertThat(((Page<Book>) result).getTotalElements()).isEqualTo(5000);
+        Mockito.verify(repository, Mockito.never()).countMatching(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("find projected books without a total")
+    public void findProjectedBooksWithoutCountTest() {
+        Book book = createValidBook();
+        Set<String> fields = new HashSet<>(Arrays.asList("id", "title"));
+        PageRequest pageRequest = PageRequest.of(0, 1);
+        Slice<Book> slice = new SliceImpl<>(Arrays.asList(book), pageRequest, true);
+        Mockito.when(repository.findProjectedSlice(book, fields, pageRequest)).thenReturn(slice);
+
+        Slice<Book> result = service.find(book, fields, pageRequest, CountStrategy.NONE);
+
+        assertThat(result).isSameAs(slice);
+        Mockito.verify(repository, Mockito.never()).countMatching(Mockito.any(Book.class));
+        Mockito.verify(repository, Mockito.never()).estimateCount(Mockito.any(Book.class));
+    }
+
+    @Test
+    @DisplayName("publish a change for every write")
+    public void publishChangesTest() {
+        List<Object> events = new ArrayList<>();
+        service = new BookServiceImpl(repository, searchIndex, Duration.ofSeconds(30), Duration.ofSeconds(1), events::add, BookShards.single(), null, false);
+        Book book = createValidBook();
+        Book saved = Book.builder().id(10l).title("Cassino Royale").author("Ian Fleming").isbn("U1234").build();
+        Mockito.when(repository.saveAndFlush(book)).thenReturn(saved);
+        Mockito.when(repository.updateTitleAndAuthor(10l, "Dr. No", "Ian Fleming", null)).thenReturn(1);
+        Mockito.when(repository.deleteByIdAndVersion(10l, null)).thenReturn(1);
+        Mockito.when(repository.deleteByIdAndVersion(11l, null)).thenReturn(0);
+
+        service.save(book);
+        service.updateById(10l, Book.builder().title("Dr. No").author("Ian Fleming").build(), null);
+        service.deleteById(10l, null);
+        service.deleteById(11l, null);
+
+        assertThat(events).containsExactly(
+                new BookChangedEvent(10l, BookChangedEvent.Change.CREATED),
+                new BookChangedEvent(10l, BookChangedEvent.Change.UPDATED),
+                new BookChangedEvent(10l, BookChangedEvent.Change.DELETED));
+    }
+
+    @Test
+    @DisplayName("share a read in flight, but not with reads after a write")
+    public void coalesceReadsTest() throws Exception {
+        Book stale = Book.builder().id(10l).title("Cassino Royale").build();
+        Book fresh = Book.builder().id(10l).title("Dr. No").build();
+        CountDownLatch reading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Mockito.when(repository.findById(10l)).thenAnswer(invocation -> {
+            reading.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return Optional.of(stale);
+        }).thenReturn(Optional.of(fresh));
+        Mockito.when(repository.updateTitleAndAuthor(10l, "Dr. No", null, null)).thenReturn(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Optional<Book>> first = executor.submit(() -> service.getById(10l));
+            reading.await(5, TimeUnit.SECONDS);
+            Future<Optional<Book>> joined = executor.submit(() -> service.getById(10l));
+            Thread.sleep(100);
+
+            service.updateById(10l, Book.builder().title("Dr. No").build(), null);
+            Optional<Book> afterWrite = service.getById(10l);
+            release.countDown();
+
+            assertThat(afterWrite).contains(fresh);
+            assertThat(first.get(5, TimeUnit.SECONDS)).contains(stale);
+            assertThat(joined.get(5, TimeUnit.SECONDS)).contains(stale);
+            Mockito.verify(repository, Mockito.times(2)).findById(10l);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
     private Book createValidBook() {
         return Book.builder()
                 .title("Cassino Royale")
@@ -0,0 +1,114 @@
+package br.com.gomestg.libraryapi.service;
+
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.repository.ReactiveBookRepository;
+import br.com.gomestg.libraryapi.service.impl.ReactiveBookServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+
+public class ReactiveBookServiceTest {
+
+    ReactiveBookService service;
+    ReactiveBookRepository repository;
+
+    @BeforeEach
+    public void setUp() {
+        this.repository = Mockito.mock(ReactiveBookRepository.class);
+        this.service = new ReactiveBookServiceImpl(repository);
+    }
+
+    @Test
+    @DisplayName("error business: create book with isbn duplicated")
+    public void shouldNotSaveABookWithDuplicatedIsbnTest() {
+        Mockito.when(repository.insert(any(Book.class)))
+                .thenReturn(Mono.error(new DataIntegrityViolationException("ux_book_isbn")));
+
+        StepVerifier.create(service.save(createValidBook()))
+                .expectErrorSatisfies(e -> assertThat(e)
+                        .isInstanceOf(LibraryBusinessException.class)
+                        .hasMessage("Isbn already registered"))
+                .verify();
+    }
+
+    @Test
+    @DisplayName("report whether an update or delete matched a row")
+    public void updateAndDeleteByIdTest() {
+        Mockito.when(repository.updateTitleAndAuthor(1l, "Cassino Royale", "Ian Fleming", 0l)).thenReturn(Mono.just(1));
+        Mockito.when(repository.deleteByIdAndVersion(1l, 0l)).thenReturn(Mono.just(0));
+
+        StepVerifier.create(service.updateById(1l, createValidBook(), 0l)).expectNext(true).verifyComplete();
+        StepVerifier.create(service.deleteById(1l, 0l)).expectNext(false).verifyComplete();
+    }
+
+    @Test
+    @DisplayName("skip the count query when a first page is not full")
+    public void findShortPageTest() {
+        Book filter = new Book();
+        Mockito.when(repository.find(eq(filter), any())).thenReturn(Flux.just(createValidBook()));
+
+        StepVerifier.create(service.find(filter, PageRequest.of(0, 10)))
+                .expectNextMatches(page -> page.getTotalElements() == 1 && page.getContent().size() == 1)
+                .verifyComplete();
+
+        Mockito.verify(repository, Mockito.never()).count(any());
+    }
+
+    @Test
+    @DisplayName("count when the page is full")
+    public void findFullPageTest() {
+        Book filter = new Book();
+        Mockito.when(repository.find(eq(filter), any())).thenReturn(Flux.just(createValidBook()));
+        Mockito.when(repository.count(filter)).thenReturn(Mono.just(5l));
+
+        StepVerifier.create(service.find(filter, PageRequest.of(0, 1)))
+                .expectNextMatches(page -> page.getTotalElements() == 5 && page.getTotalPages() == 5)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("stream in keyset chunks, reading at most one chunk ahead of demand")
+    public void streamTest() {
+        int chunk = 1000;
+        Book filter = new Book();
+        AtomicInteger queries = new AtomicInteger();
+        Mockito.when(repository.findAfter(eq(filter), eq(0l), anyInt()))
+                .thenReturn(books(1, chunk).doOnSubscribe(s -> queries.incrementAndGet()));
+        Mockito.when(repository.findAfter(eq(filter), eq((long) chunk), anyInt()))
+                .thenReturn(books(chunk + 1, 2 * chunk).doOnSubscribe(s -> queries.incrementAndGet()));
+        Mockito.when(repository.findAfter(eq(filter), eq(2l * chunk), anyInt()))
+                .thenReturn(books(2 * chunk + 1, 2 * chunk + 10).doOnSubscribe(s -> queries.incrementAndGet()));
+
+        StepVerifier.create(service.stream(filter), 10)
+                .expectNextCount(10)
+                .then(() -> assertThat(queries).hasValueLessThanOrEqualTo(2))
+                .thenRequest(Long.MAX_VALUE)
+                .expectNextCount(2 * chunk)
+                .verifyComplete();
+
+        assertThat(queries).hasValue(3);
+    }
+
+    private static Flux<Book> books(long from, long to) {
+        return Flux.fromStream(LongStream.rangeClosed(from, to).mapToObj(id -> Book.builder().id(id).build()));
+    }
+
+    private Book createValidBook() {
+        return Book.builder().isbn("U1234").author("Ian Fleming").title("Cassino Royale").build();
+    }
+}
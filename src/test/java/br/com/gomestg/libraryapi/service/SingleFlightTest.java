@@ -0,0 +1,122 @@
+package br.com.gomestg.libraryapi.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SingleFlightTest {
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+    AtomicInteger loads = new AtomicInteger();
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("concurrent callers of one key share a single load")
+    public void shareLoadTest() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofSeconds(5));
+
+        Future<Integer> leader = executor.submit(() -> flight.execute("a", this::blockingLoad));
+        started.await(5, TimeUnit.SECONDS);
+        Future<Integer> follower = executor.submit(() -> flight.execute("a", this::blockingLoad));
+        awaitWaiting(follower);
+        release.countDown();
+
+        assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+        assertThat(loads).hasValue(1);
+        assertThat(flight.size()).isZero();
+    }
+
+    @Test
+    @DisplayName("callers share the exception of a failed load")
+    public void shareFailureTest() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofSeconds(5));
+
+        Future<Integer> leader = executor.submit(() -> flight.execute("a", () -> {
+            blockingLoad();
+            throw new IllegalStateException("database down");
+        }));
+        started.await(5, TimeUnit.SECONDS);
+        Future<Integer> follower = executor.submit(() -> flight.execute("a", this::blockingLoad));
+        awaitWaiting(follower);
+        release.countDown();
+
+        Exception failure = assertThrows(Exception.class, () -> follower.get(5, TimeUnit.SECONDS));
+        assertThat(failure).hasRootCauseInstanceOf(IllegalStateException.class).hasRootCauseMessage("database down");
+        assertThrows(Exception.class, () -> leader.get(5, TimeUnit.SECONDS));
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    @DisplayName("a caller that waited too long loads on its own")
+    public void boundedWaitTest() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofMillis(50));
+
+        executor.submit(() -> flight.execute("a", this::blockingLoad));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThat(flight.execute("a", () -> 42)).isEqualTo(42);
+    }
+
+    @Test
+    @DisplayName("a forgotten load is not joined by later callers")
+    public void forgetTest() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofSeconds(5));
+
+        Future<Integer> stale = executor.submit(() -> flight.execute("a", this::blockingLoad));
+        started.await(5, TimeUnit.SECONDS);
+        flight.forget("a");
+
+        assertThat(flight.execute("a", () -> 42)).isEqualTo(42);
+        release.countDown();
+        assertThat(stale.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("different keys and a zero wait never share")
+    public void noSharingTest() throws Exception {
+        SingleFlight<String, Integer> flight = new SingleFlight<>(Duration.ofSeconds(5));
+        executor.submit(() -> flight.execute("a", this::blockingLoad));
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThat(flight.execute("b", () -> 42)).isEqualTo(42);
+        assertThat(new SingleFlight<String, Integer>(Duration.ZERO).execute("a", () -> 7)).isEqualTo(7);
+    }
+
+    private Integer blockingLoad() {
+        int load = loads.incrementAndGet();
+        started.countDown();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return load;
+    }
+
+    /**
+     * Gives the follower time to find the flight in progress and start waiting on it.
+     */
+    private static void awaitWaiting(Future<?> follower) throws InterruptedException {
+        Thread.sleep(100);
+        assertThat(follower).isNotDone();
+    }
+}
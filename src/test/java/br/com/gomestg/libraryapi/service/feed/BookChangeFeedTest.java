@@ -0,0 +1,180 @@
+package br.com.gomestg.libraryapi.service.feed;
+
+import br.com.gomestg.libraryapi.service.BookChangedEvent;
+import br.com.gomestg.libraryapi.service.BookChangedEvent.Change;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookChangeFeedTest {
+
+    MeterRegistry registry = new SimpleMeterRegistry();
+    BookChangeFeed feed = new BookChangeFeed(3, Duration.ofSeconds(15), Duration.ofSeconds(10), registry, Runnable::run);
+    RecordingListener listener = new RecordingListener();
+
+    @Test
+    @DisplayName("send changes in order, resuming after a sequence")
+    public void resumeTest() {
+        feed.onBookChanged(new BookChangedEvent(10l, Change.CREATED));
+        feed.onBookChanged(new BookChangedEvent(10l, Change.UPDATED));
+        feed.onBookChanged(new BookChangedEvent(11l, Change.CREATED));
+
+        feed.subscribe(feed.eventId(1), listener);
+        assertThat(registry.get("library.change-feed.lag").gauge().value()).isEqualTo(2);
+        feed.dispatch(false);
+        feed.onBookChanged(new BookChangedEvent(10l, Change.DELETED));
+        feed.dispatch(false);
+
+        assertThat(listener.changes).extracting(BookChange::getSequence).containsExactly(2l, 3l, 4l);
+        assertThat(listener.changes).extracting(BookChange::getChange)
+                .containsExactly(Change.UPDATED, Change.CREATED, Change.DELETED);
+        assertThat(registry.get("library.change-feed.sequence").gauge().value()).isEqualTo(4);
+        assertThat(registry.get("library.change-feed.lag").gauge().value()).isZero();
+    }
+
+    @Test
+    @DisplayName("send only later changes without a sequence, and idle notices meanwhile")
+    public void fromNowTest() {
+        feed.onBookChanged(new BookChangedEvent(10l, Change.CREATED));
+
+        feed.subscribe(null, listener);
+        feed.dispatch(true);
+        feed.onBookChanged(new BookChangedEvent(11l, Change.CREATED));
+        feed.dispatch(true);
+
+        assertThat(listener.idle).isEqualTo(1);
+        assertThat(listener.changes).extracting(BookChange::getBookId).containsExactly(11l);
+    }
+
+    @Test
+    @DisplayName("reset subscribers whose changes were overwritten, are still to come or are from another run")
+    public void resetTest() {
+        for (long id = 1; id <= 5; id++) {
+            feed.onBookChanged(new BookChangedEvent(id, Change.CREATED));
+        }
+        RecordingListener ahead = new RecordingListener();
+        RecordingListener otherRun = new RecordingListener();
+        RecordingListener bare = new RecordingListener();
+
+        feed.subscribe(feed.eventId(1), listener);
+        feed.subscribe(feed.eventId(9), ahead);
+        feed.subscribe(new BookChangeFeed(3, Duration.ofSeconds(15), Duration.ofSeconds(10), registry, Runnable::run).eventId(3), otherRun);
+        feed.subscribe("3", bare);
+        feed.subscribe(feed.eventId(2), new RecordingListener());
+        feed.dispatch(false);
+
+        assertThat(listener.changes).isEmpty();
+        assertThat(listener.reset).isEqualTo(5l);
+        assertThat(ahead.reset).isEqualTo(5l);
+        assertThat(otherRun.changes).isEmpty();
+        assertThat(otherRun.reset).isEqualTo(5l);
+        assertThat(bare.reset).isEqualTo(5l);
+        assertThat(registry.get("library.change-feed.resets").functionCounter().count()).isEqualTo(4);
+        assertThat(registry.get("library.change-feed.subscribers").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("drop subscribers whose client went away")
+    public void failedListenerTest() {
+        feed.subscribe(feed.eventId(0), new RecordingListener() {
+            @Override
+            public void onChanges(List<BookChange> changes) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        });
+        feed.onBookChanged(new BookChangedEvent(10l, Change.CREATED));
+
+        feed.dispatch(false);
+
+        assertThat(registry.get("library.change-feed.subscribers").gauge().value()).isZero();
+        assertThat(registry.get("library.change-feed.resets").functionCounter().count()).isZero();
+    }
+
+    @Test
+    @DisplayName("drop subscribers that take too long to send to, without holding up the others")
+    public void slowListenerTest() throws Exception {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ExecutorService senders = Executors.newCachedThreadPool();
+        BookChangeFeed feed = new BookChangeFeed(3, Duration.ofSeconds(15), Duration.ofMillis(50), registry, senders);
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CountDownLatch received = new CountDownLatch(2);
+        feed.subscribe(feed.eventId(0), new RecordingListener() {
+            @Override
+            public void onChanges(List<BookChange> changes) throws IOException {
+                try {
+                    stalled.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+
+            @Override
+            public void onDropped() {
+                cancelled.countDown();
+            }
+        });
+        feed.subscribe(feed.eventId(0), new RecordingListener() {
+            @Override
+            public void onChanges(List<BookChange> changes) {
+                changes.forEach(change -> received.countDown());
+            }
+        });
+
+        try {
+            feed.onBookChanged(new BookChangedEvent(10l, Change.CREATED));
+            feed.dispatch(false);
+            Thread.sleep(100);
+            feed.onBookChanged(new BookChangedEvent(11l, Change.CREATED));
+            feed.dispatch(false);
+
+            assertThat(received.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(cancelled.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(registry.get("library.change-feed.drops").functionCounter().count()).isEqualTo(1);
+            assertThat(registry.get("library.change-feed.subscribers").gauge().value()).isEqualTo(1);
+        } finally {
+            stalled.countDown();
+            senders.shutdown();
+        }
+    }
+
+    static class RecordingListener implements BookChangeFeed.Listener {
+
+        List<BookChange> changes = new ArrayList<>();
+        Long reset;
+        int idle;
+        boolean dropped;
+
+        @Override
+        public void onChanges(List<BookChange> changes) throws IOException {
+            this.changes.addAll(changes);
+        }
+
+        @Override
+        public void onReset(long sequence) {
+            reset = sequence;
+        }
+
+        @Override
+        public void onIdle() {
+            idle++;
+        }
+
+        @Override
+        public void onDropped() {
+            dropped = true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package br.com.gomestg.libraryapi.service.queue;
+
+import br.com.gomestg.libraryapi.exception.LibraryBusinessException;
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.service.BookService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BookWriteQueueTest {
+
+    BookService service = Mockito.mock(BookService.class);
+    MeterRegistry registry = new SimpleMeterRegistry();
+    BookWriteQueue queue = new BookWriteQueue(service, 2, 10, Duration.ofHours(1), registry);
+
+    @Test
+    @DisplayName("save queued books in one batch")
+    public void writeTest() throws InterruptedException {
+        Mockito.when(service.saveAll(Mockito.anyList())).then(invocation -> savedFirst(invocation.getArgument(0)));
+
+        BookWriteQueue.Ticket first = queue.submit(createBook("U1"), null).get();
+        BookWriteQueue.Ticket second = queue.submit(createBook("U1"), null).get();
+        assertThat(first.getStatus()).isEqualTo(BookWriteQueue.Status.PENDING);
+
+        assertThat(queue.writePending(0, TimeUnit.MILLISECONDS)).isEqualTo(2);
+
+        assertThat(first.getStatus()).isEqualTo(BookWriteQueue.Status.CREATED);
+        assertThat(first.getBookId()).isEqualTo(1l);
+        assertThat(second.getStatus()).isEqualTo(BookWriteQueue.Status.FAILED);
+        assertThat(second.getError()).isEqualTo("Isbn already registered");
+        assertThat(queue.find(first.getId())).contains(first);
+        Mockito.verify(service, Mockito.times(1)).saveAll(Mockito.anyList());
+    }
+
+    @Test
+    @DisplayName("turn creates away while the queue is full")
+    public void fullTest() throws InterruptedException {
+        Mockito.when(service.saveAll(Mockito.anyList())).then(invocation -> savedFirst(invocation.getArgument(0)));
+        queue.submit(createBook("U1"), null);
+        queue.submit(createBook("U2"), "key");
+
+        assertThat(queue.submit(createBook("U3"), "other")).isEmpty();
+        assertThat(registry.get("library.write-behind.rejected").functionCounter().count()).isEqualTo(1);
+        assertThat(registry.get("library.write-behind.queued").gauge().value()).isEqualTo(2);
+
+        queue.writePending(0, TimeUnit.MILLISECONDS);
+        assertThat(queue.submit(createBook("U3"), "other")).isPresent();
+    }
+
+    @Test
+    @DisplayName("return the first ticket to a retry with the same idempotency key")
+    public void idempotencyTest() {
+        BookWriteQueue.Ticket first = queue.submit(createBook("U1"), "key").get();
+
+        assertThat(queue.submit(createBook("U1"), "key")).contains(first);
+        assertThat(queue.submit(createBook("U2"), null)).isPresent();
+        assertThrows(LibraryBusinessException.class, () -> queue.submit(createBook("U9"), "key"));
+    }
+
+    @Test
+    @DisplayName("fail the whole batch when it can't be saved")
+    public void failureTest() throws InterruptedException {
+        Mockito.when(service.saveAll(Mockito.anyList())).thenThrow(new IllegalStateException("database down"));
+        BookWriteQueue.Ticket ticket = queue.submit(createBook("U1"), null).get();
+
+        queue.writePending(0, TimeUnit.MILLISECONDS);
+
+        assertThat(ticket.getStatus()).isEqualTo(BookWriteQueue.Status.FAILED);
+        assertThat(ticket.getError()).contains("database down");
+    }
+
+    @Test
+    @DisplayName("write every queued book before stopping")
+    public void stopTest() {
+        Mockito.when(service.saveAll(Mockito.anyList())).then(invocation -> savedFirst(invocation.getArgument(0)));
+        queue.start();
+        BookWriteQueue.Ticket ticket = queue.submit(createBook("U1"), null).get();
+
+        queue.stop();
+
+        assertThat(queue.isRunning()).isFalse();
+        assertThat(ticket.getStatus()).isEqualTo(BookWriteQueue.Status.CREATED);
+    }
+
+    @Test
+    @DisplayName("not find an unknown ticket")
+    public void unknownTicketTest() {
+        assertThat(queue.find("missing")).isEqualTo(Optional.empty());
+    }
+
+    private static List<Book> savedFirst(List<Book> books) {
+        List<Book> saved = new ArrayList<>();
+        List<String> isbns = new ArrayList<>();
+        for (Book book : books) {
+            if (!isbns.contains(book.getIsbn())) {
+                isbns.add(book.getIsbn());
+                book.setId((long) isbns.size());
+                saved.add(book);
+            }
+        }
+        return saved;
+    }
+
+    private static Book createBook(String isbn) {
+        return Book.builder().title("Cassino Royale").author("Ian Fleming").isbn(isbn).build();
+    }
+}
@@ -0,0 +1,68 @@
+package br.com.gomestg.libraryapi.service.search;
+
+import br.com.gomestg.libraryapi.model.entity.Book;
+import br.com.gomestg.libraryapi.model.repository.BookRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BookSearchIndexTest {
+
+    BookRepository repository;
+    BookSearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        repository = Mockito.mock(BookRepository.class);
+        index = new BookSearchIndex(repository);
+        index.index(Book.builder().id(1l).title("Cassino Royale").author("Ian Fleming").build());
+        index.index(Book.builder().id(2l).title("Dr. No").author("Ian Fleming").build());
+        index.index(Book.builder().id(3l).title("Flemish Painters").author("Joana Álvares").build());
+    }
+
+    @Test
+    @DisplayName("rank title matches over author matches and exact over prefix")
+    public void rankTest() {
+        assertThat(index.search("fleming")).containsExactly(1l, 2l);
+        assertThat(index.search("flem")).containsExactly(3l, 1l, 2l);
+    }
+
+    @Test
+    @DisplayName("match every term ignoring case and accents")
+    public void allTermsTest() {
+        assertThat(index.search("ian ROYALE")).containsExactly(1l);
+        assertThat(index.search("alvares")).containsExactly(3l);
+        assertThat(index.search("ian dune")).isEmpty();
+        assertThat(index.search("  ")).isEmpty();
+    }
+
+    @Test
+    @DisplayName("reindex and remove books")
+    public void updateAndRemoveTest() {
+        index.index(Book.builder().id(1l).title("Goldfinger").author("Ian Fleming").build());
+        index.remove(2l);
+
+        assertThat(index.search("royale")).isEmpty();
+        assertThat(index.search("goldfinger")).containsExactly(1l);
+        assertThat(index.search("fleming")).containsExactly(1l);
+    }
+
+    @Test
+    @DisplayName("rebuild from the repository")
+    public void rebuildTest() {
+        Book book = Book.builder().id(7l).title("Dune").author("Frank Herbert").build();
+        Mockito.when(repository.findAfter(Mockito.eq(0l), Mockito.isNull(), Mockito.isNull(), Mockito.isNull(), Mockito.any()))
+                .thenReturn(new SliceImpl<>(Arrays.asList(book), PageRequest.of(0, 1000), false));
+
+        index.rebuild();
+
+        assertThat(index.search("herbert")).containsExactly(7l);
+    }
+}